@@ -1,13 +1,25 @@
 package com.antelope.clustercache.autoconfigure;
 
+import com.antelope.clustercache.autoconfigure.aspect.BatchCacheBackfiller;
 import com.antelope.clustercache.autoconfigure.aspect.BatchCacheableAspect;
+import com.antelope.clustercache.autoconfigure.aspect.BatchCollapser;
+import com.antelope.clustercache.autoconfigure.aspect.processor.AbstractBatchCacheableProcessor;
+import com.antelope.clustercache.autoconfigure.aspect.processor.ChunkedBatchExecutor;
 import com.antelope.clustercache.autoconfigure.aspect.processor.MemcachedBatchCacheableProcessor;
 import com.antelope.clustercache.autoconfigure.aspect.processor.RedisBatchCacheableProcessor;
+import com.antelope.clustercache.autoconfigure.core.BinaryCodec;
+import com.antelope.clustercache.autoconfigure.core.CacheKeyCodec;
+import com.antelope.clustercache.autoconfigure.core.CacheRefresher;
 import com.antelope.clustercache.autoconfigure.core.DefaultKeyGenerator;
+import com.antelope.clustercache.autoconfigure.core.TtlJitter;
+import com.antelope.clustercache.autoconfigure.core.ValueCompressor;
+import com.antelope.clustercache.autoconfigure.local.LocalCacheRegistry;
+import com.antelope.clustercache.autoconfigure.memcached.BinaryTranscoder;
 import com.antelope.clustercache.autoconfigure.memcached.FastJsonTranscoder;
 import com.antelope.clustercache.autoconfigure.memcached.JacksonJsonTranscoder;
 import com.antelope.clustercache.autoconfigure.memcached.MemCachedConfiguration;
 import com.antelope.clustercache.autoconfigure.memcached.MemcacheCacheManager;
+import com.antelope.clustercache.autoconfigure.redis.BinaryRedisSerializer;
 import com.antelope.clustercache.autoconfigure.redis.DefaultRedisCacheWriter;
 import com.antelope.clustercache.autoconfigure.redis.RedisCacheConfiguration;
 import com.antelope.clustercache.autoconfigure.redis.RedisCacheManager;
@@ -20,6 +32,7 @@ import net.rubyeye.xmemcached.XMemcachedClient;
 import net.rubyeye.xmemcached.XMemcachedClientBuilder;
 import net.rubyeye.xmemcached.transcoders.SerializingTranscoder;
 import net.rubyeye.xmemcached.utils.AddrUtil;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
@@ -35,15 +48,18 @@ import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.data.redis.core.RedisOperations;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.data.redis.core.StringRedisTemplate;
-import org.springframework.data.redis.serializer.RedisSerializationContext;
+import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.lang.NonNull;
+import org.springframework.util.ClassUtils;
 
 import javax.annotation.PostConstruct;
 import javax.annotation.Resource;
 import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.util.List;
+import java.util.stream.Collectors;
 
+import static com.antelope.clustercache.autoconfigure.ClusterCacheProperties.SerialType.BINARY;
 import static com.antelope.clustercache.autoconfigure.ClusterCacheProperties.SerialType.FASTJSON;
 import static com.antelope.clustercache.autoconfigure.redis.RedisCacheManager.FASTJSON_SERIALIZER;
 import static com.antelope.clustercache.autoconfigure.redis.RedisCacheManager.STRING_SERIALIZER;
@@ -72,6 +88,8 @@ public class ClusterCacheAutoConfiguration {
         private com.antelope.clustercache.autoconfigure.ClusterCacheProperties cacheProperties;
         @Resource
         private RedisConnectionFactory redisConnectionFactory;
+        @Resource
+        private ObjectProvider<CacheKeyCodec> keyCodecProvider;
 
         @PostConstruct
         public void init() {
@@ -90,14 +108,21 @@ public class ClusterCacheAutoConfiguration {
         @Override
         public CacheManager cacheManager() {
             log.info("RedisCacheManager init...");
-            return new RedisCacheManager(DefaultRedisCacheWriter.getInstance(redisConnectionFactory), defaultRedisCacheConfiguration());
+            DefaultRedisCacheWriter cacheWriter = DefaultRedisCacheWriter.getInstance(redisConnectionFactory);
+            cacheWriter.setScanCount(cacheProperties.getRedis().getScanCount());
+            RedisCacheManager redisCacheManager = new RedisCacheManager(cacheWriter, defaultRedisCacheConfiguration());
+            redisCacheManager.setLocalCacheRegistry(localCacheRegistry(cacheProperties, redisConnectionFactory));
+            redisCacheManager.setTypedValues(cacheProperties.isTypedValues());
+            return redisCacheManager;
         }
 
         @Bean
         @ConditionalOnMissingBean(BatchCacheableAspect.class)
         public BatchCacheableAspect batchCacheableAspect() {
-            RedisBatchCacheableProcessor batchCacheableProcessor = new RedisBatchCacheableProcessor(cacheManager());
-            return new BatchCacheableAspect(batchCacheableProcessor);
+            RedisBatchCacheableProcessor batchCacheableProcessor = new RedisBatchCacheableProcessor(cacheManager(), chunkedBatchExecutor(cacheProperties));
+            return new BatchCacheableAspect(batchCacheableProcessor, batchCacheBackfiller(cacheProperties, batchCacheableProcessor),
+                    new BatchCollapser(cacheProperties.getBatch().getCollapseWindow(), cacheProperties.getBatch().getCollapseMaxSize(),
+                            cacheProperties.getLoadWaitTimeout()));
         }
 
         @Bean
@@ -108,17 +133,30 @@ public class ClusterCacheAutoConfiguration {
         }
 
         private RedisCacheConfiguration defaultRedisCacheConfiguration() {
-            RedisSerializationContext.SerializationPair<Object> serializationPair =
-                    cacheProperties.getSerialType() == FASTJSON
-                            ? RedisCacheManager.FASTJSON_PAIR
-                            : RedisCacheManager.JACKSON_PAIR;
+            RedisSerializer<Object> valueSerializer;
+            if (cacheProperties.getSerialType() == BINARY) {
+                valueSerializer = new BinaryRedisSerializer(binaryCodec(cacheProperties));
+            } else {
+                valueSerializer = cacheProperties.getSerialType() == FASTJSON
+                        ? RedisCacheManager.FASTJSON_CACHE_SERIALIZER
+                        : RedisCacheManager.JACKSON_SERIALIZER;
+            }
             return RedisCacheConfiguration.defaultCacheConfig()
                     .setTtl(cacheProperties.getDefaultTtl())
                     .setKeyPrefix(cacheProperties.getKeyPrefix())
                     .setKeySeparator(cacheProperties.getKeySeparator())
                     .setCacheNullValues(cacheProperties.isCacheNullValues())
+                    .setBatchSize(cacheProperties.getBatchSize())
+                    .setLoadWaitTimeout(cacheProperties.getLoadWaitTimeout())
+                    .setCacheRefresher(new CacheRefresher(cacheProperties.getRefreshThreads(), cacheProperties.getRefreshQueueCapacity()))
+                    .setTtlJitter(TtlJitter.parse(cacheProperties.getTtlJitter()))
+                    .setValueCompressor(valueCompressor(cacheProperties))
+                    .setKeyCodecs(keyCodecs(keyCodecProvider))
+                    .setClearAsync(cacheProperties.getRedis().isClearAsync())
+                    .setNameVersionEnabled(cacheProperties.getRedis().isNameVersionEnabled())
+                    .setNameVersionRefreshInterval(cacheProperties.getRedis().getNameVersionRefreshInterval())
                     .setKeySerializationPair(RedisCacheManager.STRING_PAIR)
-                    .setValueSerializationPair(serializationPair);
+                    .setValueSerializer(valueSerializer);
         }
 
     }
@@ -132,6 +170,10 @@ public class ClusterCacheAutoConfiguration {
 
         @Resource
         private com.antelope.clustercache.autoconfigure.ClusterCacheProperties cacheProperties;
+        @Resource
+        private ObjectProvider<RedisConnectionFactory> redisConnectionFactoryProvider;
+        @Resource
+        private ObjectProvider<CacheKeyCodec> keyCodecProvider;
 
 
         @PostConstruct
@@ -152,8 +194,19 @@ public class ClusterCacheAutoConfiguration {
                     .setTtl(cacheProperties.getDefaultTtl())
                     .setKeyPrefix(cacheProperties.getKeyPrefix())
                     .setKeySeparator(cacheProperties.getKeySeparator())
-                    .setCacheNullValues(cacheProperties.isCacheNullValues());
-            return new MemcacheCacheManager(memcachedClient(), memCachedConfiguration);
+                    .setCacheNullValues(cacheProperties.isCacheNullValues())
+                    .setNameVersionRefreshInterval(cacheProperties.getMemcached().getNameVersionRefreshInterval())
+                    .setLoadWaitTimeout(cacheProperties.getLoadWaitTimeout())
+                    .setCacheRefresher(new CacheRefresher(cacheProperties.getRefreshThreads(), cacheProperties.getRefreshQueueCapacity()))
+                    .setTtlJitter(TtlJitter.parse(cacheProperties.getTtlJitter()))
+                    .setValueCompressor(valueCompressor(cacheProperties))
+                    .setKeyCodecs(keyCodecs(keyCodecProvider))
+                    .setBatchWriteNoReply(cacheProperties.getMemcached().isBatchWriteNoReply())
+                    .setBatchWriteVerify(cacheProperties.getMemcached().isBatchWriteVerify());
+            MemcacheCacheManager memcacheCacheManager = new MemcacheCacheManager(memcachedClient(), memCachedConfiguration);
+            memcacheCacheManager.setLocalCacheRegistry(localCacheRegistry(cacheProperties, redisConnectionFactoryProvider.getIfAvailable()));
+            memcacheCacheManager.setTypedValues(cacheProperties.isTypedValues());
+            return memcacheCacheManager;
         }
 
         @Bean
@@ -163,9 +216,19 @@ public class ClusterCacheAutoConfiguration {
             List<InetSocketAddress> addresses = AddrUtil.getAddresses(String.join(" ", properties.getHosts()));
             XMemcachedClientBuilder builder = new XMemcachedClientBuilder(addresses, properties.getWeight());
 
-            SerializingTranscoder transcoder = cacheProperties.getSerialType() == FASTJSON
-                    ? FastJsonTranscoder.getInstance()
-                    : JacksonJsonTranscoder.getInstance();
+            SerializingTranscoder transcoder;
+            if (cacheProperties.getSerialType() == BINARY) {
+                transcoder = new BinaryTranscoder(binaryCodec(cacheProperties));
+            } else {
+                // 使用新实例，修改压缩阈值不影响共享的单例
+                transcoder = cacheProperties.getSerialType() == FASTJSON
+                        ? new FastJsonTranscoder()
+                        : new JacksonJsonTranscoder();
+            }
+            if (valueCompressor(cacheProperties) != null) {
+                // 由配置的压缩代替客户端自带的 gzip 压缩
+                transcoder.setCompressionThreshold(Integer.MAX_VALUE);
+            }
             builder.setTranscoder(transcoder);
             try {
                 return builder.build();
@@ -178,8 +241,10 @@ public class ClusterCacheAutoConfiguration {
         @ConditionalOnMissingBean(BatchCacheableAspect.class)
         public BatchCacheableAspect batchCacheableAspect() {
             log.info("BatchCacheableAspect init...");
-            MemcachedBatchCacheableProcessor batchCacheableProcessor = new MemcachedBatchCacheableProcessor(cacheManager());
-            return new BatchCacheableAspect(batchCacheableProcessor);
+            MemcachedBatchCacheableProcessor batchCacheableProcessor = new MemcachedBatchCacheableProcessor(cacheManager(), chunkedBatchExecutor(cacheProperties));
+            return new BatchCacheableAspect(batchCacheableProcessor, batchCacheBackfiller(cacheProperties, batchCacheableProcessor),
+                    new BatchCollapser(cacheProperties.getBatch().getCollapseWindow(), cacheProperties.getBatch().getCollapseMaxSize(),
+                            cacheProperties.getLoadWaitTimeout()));
         }
 
         @Bean
@@ -229,6 +294,51 @@ public class ClusterCacheAutoConfiguration {
     @Slf4j
     private static abstract class CachingConfigurerSupportAdapter extends CachingConfigurerSupport {
 
+        /**
+         * 未启用本地缓存时返回null
+         */
+        protected LocalCacheRegistry localCacheRegistry(ClusterCacheProperties cacheProperties, RedisConnectionFactory redisConnectionFactory) {
+            if (!cacheProperties.getLocal().isEnable()) {
+                return null;
+            }
+            log.info("LocalCacheRegistry init...");
+            return new LocalCacheRegistry(cacheProperties.getLocal(), redisConnectionFactory);
+        }
+
+        protected ChunkedBatchExecutor chunkedBatchExecutor(ClusterCacheProperties cacheProperties) {
+            ClusterCacheProperties.Batch batch = cacheProperties.getBatch();
+            return new ChunkedBatchExecutor(batch.getChunkSize(), batch.getChunkParallelism(), batch.getChunkThreads());
+        }
+
+        protected BatchCacheBackfiller batchCacheBackfiller(ClusterCacheProperties cacheProperties, AbstractBatchCacheableProcessor batchCacheableProcessor) {
+            ClusterCacheProperties.Batch batch = cacheProperties.getBatch();
+            return new BatchCacheBackfiller(batchCacheableProcessor, batch.getBackfillThreads(), batch.getBackfillQueueCapacity(),
+                    batch.getBackfillRejectPolicy(), batch.getBackfillShutdownTimeout(), cacheProperties.getBatchSize());
+        }
+
+        protected BinaryCodec binaryCodec(ClusterCacheProperties cacheProperties) {
+            if (!ClassUtils.isPresent("com.esotericsoftware.kryo.Kryo", getClass().getClassLoader())) {
+                throw new IllegalStateException("serialType binary requires com.esotericsoftware:kryo on the classpath");
+            }
+            log.info("BinaryCodec init, registered classes: {}", cacheProperties.getBinary().getRegisteredClasses().size());
+            return new BinaryCodec(cacheProperties.getBinary().getRegisteredClasses());
+        }
+
+        /**
+         * 未配置压缩阈值时返回null
+         */
+        protected ValueCompressor valueCompressor(ClusterCacheProperties cacheProperties) {
+            ClusterCacheProperties.Compression compression = cacheProperties.getCompression();
+            return ValueCompressor.of(compression.getAlgorithm(), compression.getThreshold());
+        }
+
+        /**
+         * 按 Ordered 排序的自定义缓存key编码
+         */
+        protected List<CacheKeyCodec> keyCodecs(ObjectProvider<CacheKeyCodec> keyCodecProvider) {
+            return keyCodecProvider.orderedStream().collect(Collectors.toList());
+        }
+
         protected KeyGenerator keyGenerator(Class<? extends KeyGenerator> clazz) {
             try {
                 return clazz.newInstance();
@@ -1,12 +1,19 @@
 package com.antelope.clustercache.autoconfigure;
 
+import com.antelope.clustercache.autoconfigure.aspect.BatchCacheBackfiller;
 import com.antelope.clustercache.autoconfigure.core.DefaultKeyGenerator;
+import com.antelope.clustercache.autoconfigure.core.ValueCompressor;
 import lombok.Getter;
 import lombok.Setter;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.cache.interceptor.KeyGenerator;
+import org.springframework.util.unit.DataSize;
 
 import java.time.Duration;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * @author yaml
@@ -36,19 +43,49 @@ public class ClusterCacheProperties {
      * 默认过期时间
      */
     private Duration defaultTtl = Duration.ofHours(1L);
+    /**
+     * 过期时间随机抖动的范围，支持固定时长（如 5m）或百分比（如 10%），为空表示不抖动
+     */
+    private String ttlJitter;
+    /**
+     * 批量缓存操作每批次的key数量；@BatchCacheable 的批量查询按 batch.chunkSize 分片，不再按该值拆分
+     */
+    private int batchSize = 500;
+    /**
+     * 缓存未命中时等待其他线程加载同一个key的最长时间，超时后自行加载
+     */
+    private Duration loadWaitTimeout = Duration.ofSeconds(3L);
+    /**
+     * 后台提前刷新缓存的线程数
+     */
+    private int refreshThreads = 4;
+    /**
+     * 后台提前刷新缓存的任务队列长度，队列满时放弃刷新
+     */
+    private int refreshQueueCapacity = 1000;
     /**
      * 当未指定cache key时，默认生成的key => all
      */
     private Class<? extends KeyGenerator> keyGenerator = DefaultKeyGenerator.class;
     /**
-     * 序列化方式 jackson | fastjson
+     * 序列化方式 jackson | fastjson | binary
      */
     private SerialType serialType = SerialType.JACKSON;
+    /**
+     * 序列化方式为 jackson 时，是否按 @Cacheable/@BatchCacheable 方法返回类型为每个缓存绑定值类型，不再写入 @class 类型信息
+     * 开启后已有的缓存数据无法读取，会按未命中重新加载
+     */
+    private boolean typedValues = false;
     /**
      * 缓存类型 redis | memcached
      */
     private CacheType cacheType = CacheType.REDIS;
     private Memcached memcached = new Memcached();
+    private Redis redis = new Redis();
+    private Local local = new Local();
+    private Batch batch = new Batch();
+    private Binary binary = new Binary();
+    private Compression compression = new Compression();
 
     @SuppressWarnings("AlibabaEnumConstantsMustHaveComment")
     enum CacheType {
@@ -57,7 +94,125 @@ public class ClusterCacheProperties {
 
     @SuppressWarnings("AlibabaEnumConstantsMustHaveComment")
     enum SerialType {
-        JACKSON, FASTJSON
+        JACKSON, FASTJSON, BINARY
+    }
+
+    @Getter
+    @Setter
+    public static class Redis {
+        /**
+         * 清理缓存时每次 SCAN 的 COUNT 及每批 UNLINK 的key数量
+         */
+        private int scanCount = 1000;
+        /**
+         * 清理缓存是否异步执行
+         */
+        private boolean clearAsync = false;
+        /**
+         * 是否启用名称版本号，启用后清理缓存只需一次 INCR
+         */
+        private boolean nameVersionEnabled = false;
+        /**
+         * 名称版本号本地缓存的刷新间隔
+         */
+        private Duration nameVersionRefreshInterval = Duration.ofSeconds(1L);
+    }
+
+    @Getter
+    @Setter
+    public static class Batch {
+        /**
+         * 异步回填缓存的线程数
+         */
+        private int backfillThreads = 4;
+        /**
+         * 异步回填缓存的任务队列长度，每个任务最多合并 batchSize 个key
+         */
+        private int backfillQueueCapacity = 1000;
+        /**
+         * 回填队列满时的处理策略 drop | inline
+         */
+        private BatchCacheBackfiller.RejectPolicy backfillRejectPolicy = BatchCacheBackfiller.RejectPolicy.DROP;
+        /**
+         * 停止时等待回填任务执行完成的最长时间
+         */
+        private Duration backfillShutdownTimeout = Duration.ofSeconds(10L);
+        /**
+         * 合并并发请求的时间窗口，仅对 @BatchCacheable(collapse = true) 生效；
+         * 同一分组没有正在加载的批次时不等待，有并发加载时新请求最多增加一个窗口的延迟
+         */
+        private Duration collapseWindow = Duration.ofMillis(5L);
+        /**
+         * 合并请求的最大key数量，达到后立即执行
+         */
+        private int collapseMaxSize = 500;
+        /**
+         * 批量查询时每个分片的key数量
+         */
+        private int chunkSize = 500;
+        /**
+         * 每次批量查询同时执行的最大分片数
+         */
+        private int chunkParallelism = 4;
+        /**
+         * 批量查询分片的执行线程数，线程池满时在调用线程执行
+         */
+        private int chunkThreads = 8;
+    }
+
+    @Getter
+    @Setter
+    public static class Binary {
+        /**
+         * 序列化方式为 binary 时注册的类，k: 类id（不小于100） v: 类；注册后只写入类id，所有节点的配置必须一致，已使用的id不能再分配给其他类
+         */
+        private Map<Integer, Class<?>> registeredClasses = new LinkedHashMap<>();
+    }
+
+    @Getter
+    @Setter
+    public static class Compression {
+        /**
+         * 缓存值压缩阈值，序列化结果不小于该大小时压缩（如 16KB），为空表示不压缩，可通过 @CacheExpire 按缓存配置
+         */
+        private DataSize threshold;
+        /**
+         * 压缩算法 deflate | lz4，lz4 需要引入 org.lz4:lz4-java
+         */
+        private ValueCompressor.Algorithm algorithm = ValueCompressor.Algorithm.DEFLATE;
+    }
+
+    @Getter
+    @Setter
+    public static class Local {
+        /**
+         * 是否启用本地一级缓存
+         */
+        private boolean enable = false;
+        /**
+         * 启用本地缓存的 cacheName，为空时对所有缓存启用
+         */
+        private Set<String> cacheNames = new HashSet<>();
+        /**
+         * 每个 cacheName 本地缓存的最大条数
+         */
+        private long maximumSize = 10000;
+        /**
+         * 每个 cacheName 本地缓存的最大权重（集合按元素个数计），大于0时代替 maximumSize 生效
+         */
+        private long maximumWeight = 0;
+        /**
+         * 本地缓存过期时间，不会超过远程缓存的过期时间
+         */
+        private Duration ttl = Duration.ofMinutes(1L);
+        /**
+         * 本地缓存失效广播的 redis channel
+         */
+        private String invalidationChannel = "cluster-cache:local-invalidation";
+        /**
+         * 失效广播的合并发送间隔
+         */
+        private Duration invalidationBatchInterval = Duration.ofMillis(20L);
     }
 
     @Getter
@@ -68,5 +223,17 @@ public class ClusterCacheProperties {
         private int[] weight;
         private String username;
         private String password;
+        /**
+         * 名称版本号本地缓存的异步刷新间隔，其他节点 clear 后本节点最多在该间隔内读到旧版本数据
+         */
+        private Duration nameVersionRefreshInterval = Duration.ofSeconds(1L);
+        /**
+         * 批量写入是否使用 noreply，不等待每个 set 的响应
+         */
+        private boolean batchWriteNoReply = true;
+        /**
+         * noreply 批量写入后是否批量查询确认写入结果
+         */
+        private boolean batchWriteVerify = false;
     }
 }
\ No newline at end of file
@@ -7,4 +7,6 @@ package com.antelope.clustercache.autoconfigure;
 public interface Constants {
 
     String KEY_PREFIX_NAME_VERSION = "_cluster_cache_nv_";
+
+    String KEY_SUFFIX_LOAD_LEASE = "_cluster_cache_lease_";
 }
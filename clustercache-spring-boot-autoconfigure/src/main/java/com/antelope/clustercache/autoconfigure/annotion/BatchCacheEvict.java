@@ -0,0 +1,40 @@
+package com.antelope.clustercache.autoconfigure.annotion;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Inherited;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 批量删除缓存注解，将集合中的每个值作为key批量删除缓存，和 @BatchCacheable 使用相同的 cacheName、prefix 达到缓存共享
+ * eg. @BatchCacheEvict(cacheName = "test", prefix = "k_", keys = "#ids")
+ *
+ * @author yaml
+ */
+@Target({ElementType.METHOD})
+@Retention(RetentionPolicy.RUNTIME)
+@Inherited
+@Documented
+public @interface BatchCacheEvict {
+    /**
+     * cacheName
+     */
+    String cacheName();
+
+    /**
+     * 集合值前缀
+     */
+    String prefix() default "";
+
+    /**
+     * 需要删除的key集合，SpEL表达式，为空时使用第一位参数
+     */
+    String keys() default "";
+
+    /**
+     * 是否在方法执行前删除，默认方法执行成功后删除
+     */
+    boolean beforeInvocation() default false;
+}
@@ -0,0 +1,35 @@
+package com.antelope.clustercache.autoconfigure.annotion;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Inherited;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 批量更新缓存注解，方法执行成功后将返回值批量写入缓存，和 @BatchCacheable 使用相同的 cacheName、prefix 达到缓存共享
+ * 返回类型为集合时需要指定 cacheKeyField，为 Map 时使用 Map 的 key
+ *
+ * @author yaml
+ */
+@Target({ElementType.METHOD})
+@Retention(RetentionPolicy.RUNTIME)
+@Inherited
+@Documented
+public @interface BatchCachePut {
+    /**
+     * cacheName
+     */
+    String cacheName();
+
+    /**
+     * 集合值前缀
+     */
+    String prefix() default "";
+
+    /**
+     * 返回值中用作缓存key的属性名
+     */
+    String cacheKeyField() default "";
+}
@@ -9,8 +9,8 @@ import java.lang.annotation.Target;
 
 /**
  * 批量缓存注解，作用是将集合入参拆分成一条条数据进行缓存
- * 方法入参和返回类型必须为集合（Collection）
- * 使用此注解 返回的数据顺序会被打乱，所以不要在该注解的方法体内进行数据排序，应该放在外部进行数据排序
+ * 方法入参必须为集合（Collection），返回类型为 List、Set 或 Map（key 为入参集合元素）
+ * 返回的数据按入参顺序排列；返回集合且未指定 cacheKeyField 时，方法查询的数据追加在缓存数据之后
  *
  * @author yaml
  */
@@ -33,7 +33,8 @@ public @interface BatchCacheable {
     String prefix() default "";
 
     /**
-     * 使用反射获取返回值的字段名 用作添加未命中缓存数据
+     * 返回值中用作缓存key的属性名 用作添加未命中缓存数据
+     * 依次查找 getter、同名方法(record)、字段(包括父类)，支持 a.b.id 形式的嵌套属性
      */
     String cacheKeyField() default "";
 
@@ -42,4 +43,20 @@ public @interface BatchCacheable {
      */
     boolean cacheAsync() default true;
 
+    /**
+     * 是否合并并发请求：同一方法、同一对象且其余参数相同的请求在时间窗口内合并为一次缓存查询和一次方法调用
+     * 需要指定 cacheKeyField 用于从返回值中拆分各请求的结果
+     */
+    boolean collapse() default false;
+
+    /**
+     * 是否为方法未返回数据的key缓存空值，防止不存在的数据反复穿透到数据库，需要指定 cacheKeyField
+     */
+    boolean cacheMissing() default false;
+
+    /**
+     * 空值的过期时间
+     */
+    String missingTtl() default "1m";
+
 }
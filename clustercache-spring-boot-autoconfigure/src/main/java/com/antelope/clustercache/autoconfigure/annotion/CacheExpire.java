@@ -1,5 +1,6 @@
 package com.antelope.clustercache.autoconfigure.annotion;
 
+import com.antelope.clustercache.autoconfigure.core.ValueCompressor;
 import org.springframework.core.annotation.AliasFor;
 
 import java.lang.annotation.Documented;
@@ -28,4 +29,56 @@ public @interface CacheExpire {
      */
     @AliasFor("value")
     String expire() default "1h";
+
+    /**
+     * 缓存未命中时是否使用分布式加载租约，集群内只有持有租约的节点执行加载，其余节点轮询等待加载结果
+     * 仅对 @Cacheable(sync = true) 生效
+     */
+    boolean loadLease() default false;
+
+    /**
+     * 加载租约的有效期，也是未持有租约的节点等待加载结果的最长时间，超时后自行加载
+     */
+    String leaseTimeout() default "3s";
+
+    /**
+     * 提前刷新窗口，剩余过期时间小于该值时在后台重新加载，为空表示不使用
+     * 仅对 @Cacheable(sync = true) 生效；后台重新加载在刷新线程中调用被缓存的方法，
+     * 调用线程绑定的上下文（事务、SecurityContext、request scope 等）不可用，依赖这些上下文的方法不要开启
+     */
+    String refreshAhead() default "";
+
+    /**
+     * 按 XFetch 算法概率性提前刷新的系数，加载越慢、系数越大越提前，小于等于0表示不使用
+     * 仅对 @Cacheable(sync = true) 生效，线程上下文的限制同 {@link #refreshAhead()}
+     */
+    double refreshBeta() default 0;
+
+    /**
+     * 过期后继续保留旧值的时长，为空表示不使用
+     * 期间 @Cacheable(sync = true) 直接返回旧值并在后台重新加载，加载或缓存服务出错时继续返回旧值，直到 expire + staleTtl；
+     * 后台加载的线程上下文限制同 {@link #refreshAhead()}
+     */
+    String staleTtl() default "";
+
+    /**
+     * 过期时间随机抖动的范围，支持固定时长（如 5m）或百分比（如 10%），为空表示使用全局配置
+     */
+    String jitter() default "";
+
+    /**
+     * 缓存值压缩阈值，序列化结果不小于该大小时压缩（如 16KB），0 表示不压缩，为空表示使用全局配置
+     */
+    String compressThreshold() default "";
+
+    /**
+     * 压缩算法 deflate | lz4，仅在指定 compressThreshold 时生效
+     */
+    ValueCompressor.Algorithm compressAlgorithm() default ValueCompressor.Algorithm.DEFLATE;
+
+    /**
+     * 缓存值类型，仅 jackson 序列化时生效，指定后按该类型读写且不再写入 @class 类型信息；
+     * Object 表示未指定，开启 clustercache.typed-values 时按方法返回类型推断
+     */
+    Class<?> valueType() default Object.class;
 }
@@ -0,0 +1,284 @@
+package com.antelope.clustercache.autoconfigure.aspect;
+
+import com.antelope.clustercache.autoconfigure.aspect.processor.AbstractBatchCacheableProcessor;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * {@link com.antelope.clustercache.autoconfigure.annotion.BatchCacheable} 异步回填缓存的执行器
+ * 线程数和队列均有上限，同一个 cacheName + prefix + 空值过期时间 尚未执行的回填数据合并为一次 mSet；队列满时按策略丢弃或在调用线程写入；
+ * 每批合并的key数量达到 maxBatchSize 后不再合并，之后的数据作为新的一批重新入队，
+ * 尚未写入的数据不超过 (队列长度 + 线程数 + 合并中的批次) * maxBatchSize；
+ * 合并时查询到的数据优先于空值占位，同一个key不会先写入数据再被占位覆盖
+ *
+ * @author yaml
+ * @since 2021/11/19
+ */
+@Slf4j
+public class BatchCacheBackfiller {
+
+    private final AbstractBatchCacheableProcessor batchCacheableProcessor;
+    private final ThreadPoolExecutor executor;
+    private final RejectPolicy rejectPolicy;
+    private final Duration shutdownTimeout;
+    private final int maxBatchSize;
+    /**
+     * 正在合并的批次，已满或已开始写入的批次不在其中
+     */
+    private final Map<PendingKey, PendingBatch> pendingBatches = new ConcurrentHashMap<>();
+    private final AtomicLong pendingSize = new AtomicLong();
+
+    private final LongAdder submittedCount = new LongAdder();
+    private final LongAdder coalescedCount = new LongAdder();
+    private final LongAdder droppedCount = new LongAdder();
+    private final LongAdder inlineCount = new LongAdder();
+    private final LongAdder flushCount = new LongAdder();
+    private final LongAdder flushLagMillis = new LongAdder();
+
+    public BatchCacheBackfiller(AbstractBatchCacheableProcessor batchCacheableProcessor, int threads, int queueCapacity,
+                                RejectPolicy rejectPolicy, Duration shutdownTimeout) {
+        this(batchCacheableProcessor, threads, queueCapacity, rejectPolicy, shutdownTimeout, 500);
+    }
+
+    /**
+     * @param maxBatchSize 每批最多合并的key数量（数据与空值占位合计）
+     */
+    public BatchCacheBackfiller(AbstractBatchCacheableProcessor batchCacheableProcessor, int threads, int queueCapacity,
+                                RejectPolicy rejectPolicy, Duration shutdownTimeout, int maxBatchSize) {
+        this.batchCacheableProcessor = batchCacheableProcessor;
+        this.rejectPolicy = rejectPolicy;
+        this.shutdownTimeout = shutdownTimeout;
+        this.maxBatchSize = Math.max(maxBatchSize, 1);
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("cluster-cache-backfill-");
+        threadFactory.setDaemon(true);
+        this.executor = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS, new ArrayBlockingQueue<>(queueCapacity), threadFactory);
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * 提交回填数据，与同一个 cacheName + prefix 尚未执行的回填合并
+     */
+    public void submit(String cacheName, String prefix, Map<String, Object> data) {
+        submit(cacheName, prefix, data, Collections.emptyList(), null);
+    }
+
+    /**
+     * 提交回填数据及需要写入空值占位的key，合并中的批次已满时开始新的一批
+     *
+     * @param missingTtl 空值占位的过期时间
+     */
+    public void submit(String cacheName, String prefix, Map<String, Object> data, Collection<String> missingKeys, Duration missingTtl) {
+        if (data.isEmpty() && missingKeys.isEmpty()) {
+            return;
+        }
+        submittedCount.increment();
+        PendingKey key = new PendingKey(cacheName, prefix, missingTtl);
+        PendingBatch[] created = new PendingBatch[1];
+        pendingBatches.compute(key, (k, batch) -> {
+            // 已满的批次留给已入队的任务写入，不再合并
+            if (batch == null || batch.size() >= maxBatchSize) {
+                batch = new PendingBatch();
+                created[0] = batch;
+            } else {
+                coalescedCount.increment();
+            }
+            int sizeBefore = batch.size();
+            batch.missingKeys.removeAll(data.keySet());
+            batch.data.putAll(data);
+            for (String missingKey : missingKeys) {
+                if (!batch.data.containsKey(missingKey)) {
+                    batch.missingKeys.add(missingKey);
+                }
+            }
+            pendingSize.addAndGet(batch.size() - sizeBefore);
+            return batch;
+        });
+        PendingBatch batch = created[0];
+        if (batch == null) {
+            return;
+        }
+        try {
+            executor.execute(() -> flush(key, batch));
+        } catch (RejectedExecutionException e) {
+            pendingBatches.remove(key, batch);
+            if (!batch.claim()) {
+                return;
+            }
+            if (rejectPolicy == RejectPolicy.INLINE) {
+                inlineCount.increment();
+                write(key, batch);
+            } else {
+                droppedCount.increment();
+                pendingSize.addAndGet(-batch.size());
+                log.debug("batch cache backfill rejected --> cacheName:{}, size:{}", cacheName, batch.size());
+            }
+        }
+    }
+
+    /**
+     * 写入指定的批次，先移出合并中的批次，之后不会再有数据合并进来
+     */
+    private void flush(PendingKey key, PendingBatch batch) {
+        pendingBatches.remove(key, batch);
+        if (batch.claim()) {
+            flushLagMillis.add(System.currentTimeMillis() - batch.createTime);
+            flushCount.increment();
+            write(key, batch);
+        }
+    }
+
+    private void write(PendingKey key, PendingBatch batch) {
+        pendingSize.addAndGet(-batch.size());
+        try {
+            if (!batch.data.isEmpty()) {
+                batchCacheableProcessor.mSet(key.cacheName, key.prefix, batch.data);
+            }
+            if (!batch.missingKeys.isEmpty()) {
+                batchCacheableProcessor.mSetMissing(key.cacheName, key.prefix, batch.missingKeys, key.missingTtl);
+            }
+        } catch (Exception e) {
+            log.warn("batch cache backfill error --> cacheName:{}, msg:{}", key.cacheName, e.getMessage());
+        }
+    }
+
+    /**
+     * 停止接收新任务，等待队列中的回填执行完成，超时后在当前线程写入剩余数据
+     */
+    public void shutdown() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(shutdownTimeout.toMillis(), TimeUnit.MILLISECONDS)) {
+                log.warn("batch cache backfill not finished in {}, {} tasks left", shutdownTimeout, executor.getQueue().size());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // 已满的批次不在 pendingBatches 中，取出队列中未执行的任务在当前线程写入
+        List<Runnable> tasks = new ArrayList<>();
+        executor.getQueue().drainTo(tasks);
+        tasks.forEach(Runnable::run);
+        pendingBatches.forEach(this::flush);
+    }
+
+    /**
+     * 队列中等待执行的回填任务数
+     */
+    public int getQueueDepth() {
+        return executor.getQueue().size();
+    }
+
+    /**
+     * 正在合并的批次数量
+     */
+    public int getPendingCount() {
+        return pendingBatches.size();
+    }
+
+    /**
+     * 已提交尚未写入的key数量，包括已满等待执行的批次
+     */
+    public long getPendingSize() {
+        return pendingSize.get();
+    }
+
+    /**
+     * 正在合并的批次中最早一批已等待的时间，单位：毫秒
+     */
+    public long getLagMillis() {
+        long now = System.currentTimeMillis();
+        return pendingBatches.values().stream().mapToLong(batch -> now - batch.createTime).max().orElse(0L);
+    }
+
+    /**
+     * 回填从提交到开始写入的平均等待时间，单位：毫秒
+     */
+    public long getAverageLagMillis() {
+        long count = flushCount.sum();
+        return count == 0 ? 0L : flushLagMillis.sum() / count;
+    }
+
+    public long getSubmittedCount() {
+        return submittedCount.sum();
+    }
+
+    /**
+     * 合并到已有回填批次的次数
+     */
+    public long getCoalescedCount() {
+        return coalescedCount.sum();
+    }
+
+    public long getDroppedCount() {
+        return droppedCount.sum();
+    }
+
+    /**
+     * 队列满时在调用线程写入的次数
+     */
+    public long getInlineCount() {
+        return inlineCount.sum();
+    }
+
+    /**
+     * 队列满时的处理策略
+     */
+    public enum RejectPolicy {
+        /**
+         * 丢弃本次回填，下次查询未命中时再回填
+         */
+        DROP,
+        /**
+         * 在调用线程同步写入
+         */
+        INLINE
+    }
+
+    @EqualsAndHashCode
+    @AllArgsConstructor
+    private static final class PendingKey {
+        private final String cacheName;
+        private final String prefix;
+        /**
+         * 空值占位的过期时间不同的回填不合并
+         */
+        private final Duration missingTtl;
+    }
+
+    private static final class PendingBatch {
+        private final long createTime = System.currentTimeMillis();
+        private final Map<String, Object> data = new HashMap<>();
+        private final Set<String> missingKeys = new HashSet<>();
+        private final AtomicBoolean claimed = new AtomicBoolean();
+
+        int size() {
+            return data.size() + missingKeys.size();
+        }
+
+        /**
+         * 批次只写入或丢弃一次，停止时与队列中的任务可能同时处理同一批次
+         */
+        boolean claim() {
+            return claimed.compareAndSet(false, true);
+        }
+    }
+}
@@ -1,32 +1,39 @@
 package com.antelope.clustercache.autoconfigure.aspect;
 
+import com.antelope.clustercache.autoconfigure.annotion.BatchCacheEvict;
+import com.antelope.clustercache.autoconfigure.annotion.BatchCachePut;
 import com.antelope.clustercache.autoconfigure.annotion.BatchCacheable;
 import com.antelope.clustercache.autoconfigure.aspect.processor.AbstractBatchCacheableProcessor;
+import com.antelope.clustercache.autoconfigure.util.TimeUtil;
 import lombok.extern.slf4j.Slf4j;
 import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.AfterReturning;
 import org.aspectj.lang.annotation.Around;
 import org.aspectj.lang.annotation.Aspect;
 import org.aspectj.lang.annotation.Pointcut;
 import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.cache.support.NullValue;
-import org.springframework.util.CollectionUtils;
+import org.springframework.context.expression.MethodBasedEvaluationContext;
+import org.springframework.core.DefaultParameterNameDiscoverer;
+import org.springframework.core.ParameterNameDiscoverer;
+import org.springframework.expression.EvaluationContext;
+import org.springframework.expression.Expression;
+import org.springframework.expression.spel.standard.SpelExpressionParser;
 import org.springframework.util.StringUtils;
 
-import java.lang.reflect.Field;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Objects;
-import java.util.Optional;
 import java.util.Set;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.ThreadPoolExecutor;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 /**
@@ -35,12 +42,39 @@ import java.util.stream.Collectors;
  */
 @Slf4j
 @Aspect
-public class BatchCacheableAspect {
+public class BatchCacheableAspect implements DisposableBean {
+
+    private static final SpelExpressionParser PARSER = new SpelExpressionParser();
+    private static final ParameterNameDiscoverer PARAMETER_NAME_DISCOVERER = new DefaultParameterNameDiscoverer();
+    private static final Map<String, Expression> EXPRESSIONS = new ConcurrentHashMap<>();
+    private static final Map<String, Duration> MISSING_TTLS = new ConcurrentHashMap<>();
 
     private final AbstractBatchCacheableProcessor batchCacheableProcessor;
+    private final BatchCacheBackfiller backfiller;
+    private final BatchCollapser collapser;
 
     public BatchCacheableAspect(AbstractBatchCacheableProcessor batchCacheableProcessor) {
+        this(batchCacheableProcessor, new BatchCacheBackfiller(batchCacheableProcessor, 4, 1000, BatchCacheBackfiller.RejectPolicy.DROP, Duration.ofSeconds(10L)),
+                new BatchCollapser(Duration.ofMillis(5L), 500));
+    }
+
+    public BatchCacheableAspect(AbstractBatchCacheableProcessor batchCacheableProcessor, BatchCacheBackfiller backfiller, BatchCollapser collapser) {
         this.batchCacheableProcessor = batchCacheableProcessor;
+        this.backfiller = backfiller;
+        this.collapser = collapser;
+    }
+
+    public BatchCacheBackfiller getBackfiller() {
+        return backfiller;
+    }
+
+    public BatchCollapser getCollapser() {
+        return collapser;
+    }
+
+    @Override
+    public void destroy() {
+        backfiller.shutdown();
     }
 
     @Pointcut("@annotation(cacheable)")
@@ -55,11 +89,10 @@ public class BatchCacheableAspect {
         MethodSignature signature = (MethodSignature) joinPoint.getSignature();
         Class returnType = signature.getReturnType();
 
-        // 返回值类型是否为集合
-        boolean isCollection = Collection.class.isAssignableFrom(returnType);
-        // 非集合返回
-        if (!isCollection) {
-            log.warn("@BatchCacheable返回值应当为集合，若非集合请使用@Cacheable");
+        // 返回值类型是否为集合或Map
+        boolean isMap = Map.class.isAssignableFrom(returnType);
+        if (!isMap && !Collection.class.isAssignableFrom(returnType)) {
+            log.warn("@BatchCacheable返回值应当为集合或Map，若非集合请使用@Cacheable");
             return joinPoint.proceed();
         }
         Object[] args = joinPoint.getArgs();
@@ -75,97 +108,310 @@ public class BatchCacheableAspect {
             log.warn("@BatchCacheable第一位参数值应当为集合");
             return joinPoint.proceed();
         }
-        List<String> keyCollection = new ArrayList<>();
+        // k: 入参集合值的字符串形式 v: 入参集合原始值，保持入参顺序并去重
+        Map<String, Object> keyMap = new LinkedHashMap<>(((Collection) arg).size() * 4 / 3 + 1);
         for (Object o : ((Collection) arg)) {
-            Optional.ofNullable(o).map(Objects::toString).ifPresent(keyCollection::add);
+            if (o != null) {
+                keyMap.putIfAbsent(o.toString(), o);
+            }
         }
-        if (keyCollection.isEmpty()) {
+        if (keyMap.isEmpty()) {
             return joinPoint.proceed();
         }
+        // 在调用方法前解析，配置错误时不会在方法执行后失败导致方法被再次调用
+        Duration missingTtl;
         try {
-            return doProcess(joinPoint, cacheable, returnType, arg, keyCollection);
+            missingTtl = cacheable.cacheMissing() ? MISSING_TTLS.computeIfAbsent(cacheable.missingTtl(), TimeUtil::simpleParse) : null;
+        } catch (Exception e) {
+            log.error("@BatchCacheable missingTtl配置错误: {}", cacheable.missingTtl(), e);
+            return joinPoint.proceed();
+        }
+        try {
+            if (cacheable.collapse() && (isMap || !StringUtils.isEmpty(cacheable.cacheKeyField()))) {
+                return doCollapsedProcess(joinPoint, signature, cacheable, missingTtl, returnType, arg, keyMap);
+            }
+            return doProcess(joinPoint, cacheable, missingTtl, returnType, arg, keyMap);
         } catch (Exception e) {
             log.error(e.getMessage(), e);
         }
         return joinPoint.proceed();
     }
 
-    private final ExecutorService executorService = new ThreadPoolExecutor(5, 10, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), Executors.defaultThreadFactory());
+    @Pointcut("@annotation(cacheEvict)")
+    public void evictPoint(BatchCacheEvict cacheEvict) {
 
-    @SuppressWarnings({"unchecked", "rawtypes"})
-    private Collection<?> doProcess(ProceedingJoinPoint joinPoint, BatchCacheable cacheable, Class<?> returnType, Object arg, List<String> keyCollection) throws Throwable {
-        Map<String, Object> cacheData = batchCacheableProcessor.mGet(cacheable.cacheName(), cacheable.prefix(), keyCollection);
+    }
 
-        // 有缓存结果的key
-        Set<String> cachedKeys = cacheData.keySet();
-        // 无缓存结果的key
-        List<String> noCacheKeys = keyCollection.stream().filter(o -> !cachedKeys.contains(o)).collect(Collectors.toList());
+    @Pointcut("@annotation(cachePut)")
+    public void putPoint(BatchCachePut cachePut) {
+
+    }
+
+    @Around(value = "evictPoint(cacheEvict)", argNames = "joinPoint,cacheEvict")
+    public Object aroundEvict(ProceedingJoinPoint joinPoint, BatchCacheEvict cacheEvict) throws Throwable {
+        if (cacheEvict.beforeInvocation()) {
+            evict(joinPoint, cacheEvict);
+        }
+        Object result = joinPoint.proceed();
+        if (!cacheEvict.beforeInvocation()) {
+            evict(joinPoint, cacheEvict);
+        }
+        return result;
+    }
+
+    @AfterReturning(value = "putPoint(cachePut)", returning = "result", argNames = "cachePut,result")
+    public void afterPut(BatchCachePut cachePut, Object result) {
+        try {
+            Map<String, Object> data = loadedData(result, cachePut.cacheKeyField());
+            if (data == null) {
+                log.warn("@BatchCachePut返回值应当为Map，或为集合并指定cacheKeyField");
+                return;
+            }
+            if (!data.isEmpty()) {
+                batchCacheableProcessor.mSet(cachePut.cacheName(), cachePut.prefix(), data);
+            }
+        } catch (Exception e) {
+            log.error(e.getMessage(), e);
+        }
+    }
+
+    private void evict(ProceedingJoinPoint joinPoint, BatchCacheEvict cacheEvict) {
+        try {
+            Object keys = evictKeys(joinPoint, cacheEvict.keys());
+            if (!(keys instanceof Collection)) {
+                log.warn("@BatchCacheEvict keys应当为集合");
+                return;
+            }
+            Set<String> keySet = new LinkedHashSet<>();
+            for (Object key : (Collection<?>) keys) {
+                if (key != null) {
+                    keySet.add(key.toString());
+                }
+            }
+            if (!keySet.isEmpty()) {
+                batchCacheableProcessor.mEvict(cacheEvict.cacheName(), cacheEvict.prefix(), keySet);
+            }
+        } catch (Exception e) {
+            log.error(e.getMessage(), e);
+        }
+    }
+
+    private Object evictKeys(ProceedingJoinPoint joinPoint, String keys) {
+        Object[] args = joinPoint.getArgs();
+        if (StringUtils.isEmpty(keys)) {
+            return args.length == 0 ? null : args[0];
+        }
+        MethodSignature signature = (MethodSignature) joinPoint.getSignature();
+        EvaluationContext context = new MethodBasedEvaluationContext(joinPoint.getTarget(), signature.getMethod(), args, PARAMETER_NAME_DISCOVERER);
+        return EXPRESSIONS.computeIfAbsent(keys, PARSER::parseExpression).getValue(context);
+    }
 
-        Collection<Object> cachedValues = cacheData.values();
+    private Object doProcess(ProceedingJoinPoint joinPoint, BatchCacheable cacheable, Duration missingTtl, Class<?> returnType, Object arg,
+                             Map<String, Object> keyMap) throws Throwable {
+        Map<String, Object> cacheData = batchCacheableProcessor.mGet(cacheable.cacheName(), cacheable.prefix(), new ArrayList<>(keyMap.keySet()));
+
+        // 无缓存结果的key
+        List<String> noCacheKeys = new ArrayList<>(keyMap.size() - Math.min(cacheData.size(), keyMap.size()));
+        for (String key : keyMap.keySet()) {
+            if (!cacheData.containsKey(key)) {
+                noCacheKeys.add(key);
+            }
+        }
         // 均存在缓存 则直接返回缓存结果
-        if (CollectionUtils.isEmpty(noCacheKeys)) {
-            return resolve(cachedValues, returnType);
+        if (noCacheKeys.isEmpty()) {
+            return merge(keyMap, cacheData, Collections.emptyMap(), Collections.emptyList(), returnType);
         }
 
         // 未命中缓存的走代码逻辑
-        Collection<Object> noCachedValues = (Collection) joinPoint.proceed(new Object[]{resolve(noCacheKeys, arg.getClass())});
+        Object[] args = joinPoint.getArgs().clone();
+        args[0] = originalKeys(noCacheKeys, keyMap, arg.getClass());
+        Object noCachedResult = joinPoint.proceed(args);
+        // 返回值为集合且未指定 cacheKeyField 时无法对应到key，只能追加在缓存结果之后
+        Map<String, Object> loadedData = loadedData(noCachedResult, cacheable.cacheKeyField());
         // 追加缓存
-        if (cacheable.cacheAsync()) {
-            executorService.execute(() -> addCache(noCachedValues, cacheable.cacheName(), cacheable.prefix(), cacheable.cacheKeyField()));
-        } else {
-            addCache(noCachedValues, cacheable.cacheName(), cacheable.prefix(), cacheable.cacheKeyField());
+        if (loadedData != null) {
+            addCache(loadedData, noCacheKeys, cacheable, missingTtl);
         }
-        return join(cachedValues, noCachedValues, returnType);
+        return merge(keyMap, cacheData, loadedData == null ? Collections.emptyMap() : loadedData,
+                loadedData == null ? values(noCachedResult) : Collections.emptyList(), returnType);
     }
 
-    private void addCache(Collection<Object> noCachedValues, String cacheName, String prefix, String cacheKeyField) {
-        if (StringUtils.isEmpty(cacheKeyField) || CollectionUtils.isEmpty(noCachedValues)) {
-            return;
+    /**
+     * 合并并发请求：由合并批次中第一个请求的线程使用去重后的key查询缓存并调用方法，各请求按自己的key取结果
+     */
+    private Object doCollapsedProcess(ProceedingJoinPoint joinPoint, MethodSignature signature, BatchCacheable cacheable, Duration missingTtl,
+                                      Class<?> returnType, Object arg, Map<String, Object> keyMap) {
+        Object[] args = joinPoint.getArgs();
+        List<Object> group = new ArrayList<>(args.length + 1);
+        group.add(signature.getMethod());
+        group.add(joinPoint.getTarget());
+        group.addAll(Arrays.asList(args).subList(1, args.length));
+
+        Map<String, Object> values = collapser.load(group, keyMap, keys -> loadCollapsed(joinPoint, cacheable, missingTtl, arg.getClass(), keys));
+        return merge(keyMap, values, Collections.emptyMap(), Collections.emptyList(), returnType);
+    }
+
+    private Map<String, Object> loadCollapsed(ProceedingJoinPoint joinPoint, BatchCacheable cacheable, Duration missingTtl, Class<?> argType,
+                                              Map<String, Object> keyMap) throws Throwable {
+        Map<String, Object> values = new HashMap<>(batchCacheableProcessor.mGet(cacheable.cacheName(), cacheable.prefix(), new ArrayList<>(keyMap.keySet())));
+        List<String> noCacheKeys = new ArrayList<>();
+        for (String key : keyMap.keySet()) {
+            if (!values.containsKey(key)) {
+                noCacheKeys.add(key);
+            }
+        }
+        if (noCacheKeys.isEmpty()) {
+            return values;
         }
-        Map<String, Object> data = new HashMap<>(noCachedValues.size());
-        for (Object value : noCachedValues) {
+        Object[] args = joinPoint.getArgs().clone();
+        args[0] = originalKeys(noCacheKeys, keyMap, argType);
+        Map<String, Object> data = loadedData(joinPoint.proceed(args), cacheable.cacheKeyField());
+        if (data != null) {
+            addCache(data, noCacheKeys, cacheable, missingTtl);
+            values.putAll(data);
+        }
+        return values;
+    }
+
+    /**
+     * 方法返回值转换为 key -> value，返回值为Map时直接使用其key，集合时使用 cacheKeyField 获取key
+     *
+     * @return 无法确定key时返回 null
+     */
+    private Map<String, Object> loadedData(Object result, String cacheKeyField) {
+        if (result instanceof Map) {
+            Map<?, ?> map = (Map<?, ?>) result;
+            Map<String, Object> data = new HashMap<>(map.size() * 4 / 3 + 1);
+            map.forEach((key, value) -> {
+                if (key != null && value != null) {
+                    data.put(key.toString(), value);
+                }
+            });
+            return data;
+        }
+        if (StringUtils.isEmpty(cacheKeyField) || !(result instanceof Collection)) {
+            return null;
+        }
+        Collection<?> values = (Collection<?>) result;
+        Map<String, Object> data = new HashMap<>(values.size() * 4 / 3 + 1);
+        for (Object value : values) {
             if (value == null) {
                 continue;
             }
             Object filedValue = cacheKeyAttribute(value, cacheKeyField);
-            Optional.ofNullable(filedValue).ifPresent(v -> data.put(filedValue.toString(), value));
+            if (filedValue != null) {
+                data.put(filedValue.toString(), value);
+            }
         }
-        batchCacheableProcessor.mSet(cacheName, prefix, data);
+        return data;
     }
 
-    private Object cacheKeyAttribute(Object o, String cacheKeyField) {
+    private static Collection<?> values(Object result) {
+        if (result instanceof Collection) {
+            return (Collection<?>) result;
+        }
+        return Collections.emptyList();
+    }
+
+    /**
+     * 回填查询到的数据，开启 cacheMissing 时为方法未返回的key写入空值占位
+     * 方法已经执行，同步写入失败只记录日志，不影响返回结果
+     *
+     * @param missingTtl 空值占位的过期时间，未开启 cacheMissing 时为 null
+     */
+    private void addCache(Map<String, Object> data, List<String> noCacheKeys, BatchCacheable cacheable, Duration missingTtl) {
+        List<String> missingKeys = cacheable.cacheMissing()
+                ? noCacheKeys.stream().filter(key -> !data.containsKey(key)).collect(Collectors.toList())
+                : Collections.emptyList();
+        if (data.isEmpty() && missingKeys.isEmpty()) {
+            return;
+        }
+        if (cacheable.cacheAsync()) {
+            backfiller.submit(cacheable.cacheName(), cacheable.prefix(), data, missingKeys, missingTtl);
+            return;
+        }
         try {
-            Field declaredField = o.getClass().getDeclaredField(cacheKeyField);
-            declaredField.setAccessible(true);
-            return declaredField.get(o);
+            if (!data.isEmpty()) {
+                batchCacheableProcessor.mSet(cacheable.cacheName(), cacheable.prefix(), data);
+            }
+            if (!missingKeys.isEmpty()) {
+                batchCacheableProcessor.mSetMissing(cacheable.cacheName(), cacheable.prefix(), missingKeys, missingTtl);
+            }
         } catch (Exception e) {
+            log.warn("batch cache write error --> cacheName:{}, msg:{}", cacheable.cacheName(), e.getMessage());
+        }
+    }
+
+    private Object cacheKeyAttribute(Object o, String cacheKeyField) {
+        try {
+            return CacheKeyAccessor.get(o, cacheKeyField);
+        } catch (Throwable e) {
             log.warn("cacheKeyAttribute error", e);
         }
         return null;
     }
 
-    private Collection<?> resolve(Collection<?> data, Class<?> returnType) {
-        if (Set.class.isAssignableFrom(returnType)) {
-            return data.stream().filter(o -> Objects.nonNull(o) && !(o instanceof NullValue)).collect(Collectors.toSet());
+    /**
+     * 按入参顺序一次遍历合并缓存结果和方法结果，空值占位不计入结果
+     *
+     * @param unkeyedValues 无法对应到key的方法结果，追加在最后
+     */
+    private Object merge(Map<String, Object> keyMap, Map<String, Object> cacheData, Map<String, Object> loadedData,
+                         Collection<?> unkeyedValues, Class<?> returnType) {
+        int size = keyMap.size() + unkeyedValues.size();
+        if (Map.class.isAssignableFrom(returnType)) {
+            if (!returnType.isAssignableFrom(LinkedHashMap.class)) {
+                throw new RuntimeException("返回类型不支持");
+            }
+            Map<Object, Object> result = new LinkedHashMap<>(size * 4 / 3 + 1);
+            keyMap.forEach((key, originalKey) -> {
+                Object value = valueOf(key, cacheData, loadedData);
+                if (value != null) {
+                    result.put(originalKey, value);
+                }
+            });
+            return result;
+        }
+        Collection<Object> result = newCollection(returnType, size);
+        if (!returnType.isInstance(result)) {
+            throw new RuntimeException("返回类型不支持");
+        }
+        for (String key : keyMap.keySet()) {
+            Object value = valueOf(key, cacheData, loadedData);
+            if (value != null) {
+                result.add(value);
+            }
+        }
+        for (Object value : unkeyedValues) {
+            if (value != null && !(value instanceof NullValue)) {
+                result.add(value);
+            }
         }
-        if (List.class.isAssignableFrom(returnType)) {
-            return data.stream().filter(o -> Objects.nonNull(o) && !(o instanceof NullValue)).collect(Collectors.toList());
+        return result;
+    }
+
+    private static Object valueOf(String key, Map<String, Object> cacheData, Map<String, Object> loadedData) {
+        Object value = cacheData.get(key);
+        if (value == null) {
+            value = loadedData.get(key);
+        }
+        return value instanceof NullValue ? null : value;
+    }
+
+    private static Collection<Object> originalKeys(List<String> keys, Map<String, Object> keyMap, Class<?> argType) {
+        Collection<Object> result = newCollection(argType, keys.size());
+        for (String key : keys) {
+            result.add(keyMap.get(key));
         }
-        throw new RuntimeException("返回类型不支持");
+        return result;
     }
 
-    private Collection<Object> join(Collection<Object> data1, Collection<Object> data2, Class<?> returnType) {
-        if (Set.class.isAssignableFrom(returnType)) {
-            HashSet<Object> objects = new HashSet<>();
-            data1.stream().filter(o -> Objects.nonNull(o) && !(o instanceof NullValue)).forEach(objects::add);
-            data2.stream().filter(o -> Objects.nonNull(o) && !(o instanceof NullValue)).forEach(objects::add);
-            return objects;
+    private static Collection<Object> newCollection(Class<?> type, int size) {
+        if (Set.class.isAssignableFrom(type)) {
+            return new LinkedHashSet<>(size * 4 / 3 + 1);
         }
-        if (List.class.isAssignableFrom(returnType)) {
-            ArrayList<Object> objects = new ArrayList<>();
-            data1.stream().filter(o -> Objects.nonNull(o) && !(o instanceof NullValue)).forEach(objects::add);
-            data2.stream().filter(o -> Objects.nonNull(o) && !(o instanceof NullValue)).forEach(objects::add);
-            return objects;
+        if (List.class.isAssignableFrom(type) || type == Collection.class) {
+            return new ArrayList<>(size);
         }
         throw new RuntimeException("数据类型不支持");
     }
@@ -0,0 +1,144 @@
+package com.antelope.clustercache.autoconfigure.aspect;
+
+import lombok.SneakyThrows;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 批量查询合并
+ * 同一分组在时间窗口内（或key数量达到上限前）到达的请求合并为一次加载，第一个请求的线程负责加载，其余请求等待同一个结果后各取所需；
+ * 同一分组没有正在加载的批次时第一个请求立即加载，不等待时间窗口，只有并发加载时后续请求才会等待窗口合并；
+ * 等待超过 时间窗口 + 等待超时 后各自加载自己的key，避免加载过慢时请求被无限阻塞
+ *
+ * @author yaml
+ * @since 2021/11/22
+ */
+public class BatchCollapser {
+
+    private static final Duration DEFAULT_WAIT_TIMEOUT = Duration.ofSeconds(3L);
+
+    private final long windowMillis;
+    private final int maxBatchSize;
+    private final long waitTimeoutMillis;
+    private final Map<Object, Batch> batches = new ConcurrentHashMap<>();
+    /**
+     * 各分组正在加载的批次数
+     */
+    private final Map<Object, Integer> loadingBatches = new ConcurrentHashMap<>();
+
+    private final LongAdder batchCount = new LongAdder();
+    private final LongAdder collapsedCount = new LongAdder();
+    private final LongAdder timeoutCount = new LongAdder();
+
+    public BatchCollapser(Duration window, int maxBatchSize) {
+        this(window, maxBatchSize, DEFAULT_WAIT_TIMEOUT);
+    }
+
+    /**
+     * @param waitTimeout 等待合并加载结果的最长时间（不含时间窗口）
+     */
+    public BatchCollapser(Duration window, int maxBatchSize, Duration waitTimeout) {
+        this.windowMillis = window.toMillis();
+        this.maxBatchSize = Math.max(maxBatchSize, 1);
+        this.waitTimeoutMillis = waitTimeout.toMillis();
+    }
+
+    /**
+     * @param group  分组，相同分组的请求才会合并
+     * @param keys   本次请求的key，k: key的字符串形式 v: 原始key
+     * @param loader 加载合并后去重的key，返回 key -> value
+     * @return 合并加载的全部结果，调用方按自己的key取值
+     */
+    @SneakyThrows
+    public Map<String, Object> load(Object group, Map<String, Object> keys, Loader loader) {
+        boolean[] leader = new boolean[1];
+        Batch batch = joinBatch(group, keys, leader);
+        if (!leader[0]) {
+            collapsedCount.increment();
+            try {
+                return batch.result.get(windowMillis + waitTimeoutMillis, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                timeoutCount.increment();
+                return loader.load(keys);
+            } catch (ExecutionException e) {
+                throw e.getCause();
+            }
+        }
+        batchCount.increment();
+        if (loadingBatches.containsKey(group)) {
+            batch.full.await(windowMillis, TimeUnit.MILLISECONDS);
+        }
+        batches.remove(group, batch);
+        loadingBatches.merge(group, 1, Integer::sum);
+        try {
+            Map<String, Object> result = loader.load(batch.keys);
+            batch.result.complete(result);
+            return result;
+        } catch (Throwable e) {
+            batch.result.completeExceptionally(e);
+            throw e;
+        } finally {
+            loadingBatches.computeIfPresent(group, (k, count) -> count == 1 ? null : count - 1);
+        }
+    }
+
+    private Batch joinBatch(Object group, Map<String, Object> keys, boolean[] leader) {
+        Batch[] joined = new Batch[1];
+        batches.compute(group, (k, batch) -> {
+            if (batch == null) {
+                batch = new Batch();
+                leader[0] = true;
+            }
+            keys.forEach(batch.keys::putIfAbsent);
+            joined[0] = batch;
+            // 达到上限立即关闭当前批次，后续请求进入新的批次
+            if (batch.keys.size() >= maxBatchSize) {
+                batch.full.countDown();
+                return null;
+            }
+            return batch;
+        });
+        return joined[0];
+    }
+
+    /**
+     * 执行加载的批次数
+     */
+    public long getBatchCount() {
+        return batchCount.sum();
+    }
+
+    /**
+     * 合并到其他请求批次中的请求数
+     */
+    public long getCollapsedCount() {
+        return collapsedCount.sum();
+    }
+
+    /**
+     * 等待合并结果超时后自行加载的请求数
+     */
+    public long getTimeoutCount() {
+        return timeoutCount.sum();
+    }
+
+    @FunctionalInterface
+    public interface Loader {
+        Map<String, Object> load(Map<String, Object> keys) throws Throwable;
+    }
+
+    private static final class Batch {
+        private final Map<String, Object> keys = new LinkedHashMap<>();
+        private final CountDownLatch full = new CountDownLatch(1);
+        private final CompletableFuture<Map<String, Object>> result = new CompletableFuture<>();
+    }
+}
@@ -0,0 +1,77 @@
+package com.antelope.clustercache.autoconfigure.aspect;
+
+import org.springframework.util.ReflectionUtils;
+import org.springframework.util.StringUtils;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 缓存key属性读取
+ * 按 (class, 属性名) 缓存解析好的 MethodHandle，依次查找 getter、record 风格的同名方法、字段（包括父类），
+ * 支持 a.b.id 形式的嵌套路径，每一级按实际类型解析
+ *
+ * @author yaml
+ * @since 2021/11/17
+ */
+final class CacheKeyAccessor {
+
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+    private static final MethodType ACCESSOR_TYPE = MethodType.methodType(Object.class, Object.class);
+
+    private static final Map<String, String[]> PATHS = new ConcurrentHashMap<>();
+    private static final Map<Class<?>, Map<String, MethodHandle>> HANDLES = new ConcurrentHashMap<>();
+
+    private CacheKeyAccessor() {
+    }
+
+    static Object get(Object target, String path) throws Throwable {
+        Object value = target;
+        for (String property : PATHS.computeIfAbsent(path, p -> StringUtils.tokenizeToStringArray(p, "."))) {
+            if (value == null) {
+                return null;
+            }
+            value = (Object) handle(value.getClass(), property).invokeExact(value);
+        }
+        return value;
+    }
+
+    private static MethodHandle handle(Class<?> clazz, String property) {
+        return HANDLES.computeIfAbsent(clazz, c -> new ConcurrentHashMap<>()).computeIfAbsent(property, p -> resolve(clazz, p));
+    }
+
+    private static MethodHandle resolve(Class<?> clazz, String property) {
+        try {
+            Method method = findAccessorMethod(clazz, property);
+            if (method != null) {
+                ReflectionUtils.makeAccessible(method);
+                return LOOKUP.unreflect(method).asType(ACCESSOR_TYPE);
+            }
+            Field field = ReflectionUtils.findField(clazz, property);
+            if (field == null || Modifier.isStatic(field.getModifiers())) {
+                throw new IllegalArgumentException(String.format("No property '%s' found on %s", property, clazz.getName()));
+            }
+            ReflectionUtils.makeAccessible(field);
+            return LOOKUP.unreflectGetter(field).asType(ACCESSOR_TYPE);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(String.format("Cannot access property '%s' on %s", property, clazz.getName()), e);
+        }
+    }
+
+    private static Method findAccessorMethod(Class<?> clazz, String property) {
+        String capitalized = StringUtils.capitalize(property);
+        for (String name : new String[]{"get" + capitalized, "is" + capitalized, property}) {
+            Method method = ReflectionUtils.findMethod(clazz, name);
+            if (method != null && !Modifier.isStatic(method.getModifiers()) && method.getReturnType() != void.class) {
+                return method;
+            }
+        }
+        return null;
+    }
+}
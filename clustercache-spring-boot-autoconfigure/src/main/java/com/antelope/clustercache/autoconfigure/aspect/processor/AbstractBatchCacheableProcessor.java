@@ -1,5 +1,7 @@
 package com.antelope.clustercache.autoconfigure.aspect.processor;
 
+import java.time.Duration;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 
@@ -12,4 +14,11 @@ public interface AbstractBatchCacheableProcessor {
     Map<String, Object> mGet(String cacheName, String prefix, List<String> keyCollection);
 
     void mSet(String cacheName, String prefix, Map<String, Object> data);
+
+    /**
+     * 为不存在的key写入空值占位，缓存不允许null值时忽略
+     */
+    void mSetMissing(String cacheName, String prefix, Collection<String> keys, Duration ttl);
+
+    void mEvict(String cacheName, String prefix, Collection<String> keys);
 }
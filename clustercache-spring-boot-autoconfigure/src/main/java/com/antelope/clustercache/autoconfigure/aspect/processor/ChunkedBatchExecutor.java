@@ -0,0 +1,74 @@
+package com.antelope.clustercache.autoconfigure.aspect.processor;
+
+import lombok.SneakyThrows;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * 大批量key的分片执行器
+ * 按 chunkSize 拆分key，每个请求同时最多 parallelism 个分片在执行，分片结果完成一个处理一个；
+ * 线程池满时分片在调用线程执行
+ *
+ * @author yaml
+ * @since 2021/11/24
+ */
+public class ChunkedBatchExecutor {
+
+    private final int chunkSize;
+    private final int parallelism;
+    private final ThreadPoolExecutor executor;
+
+    public ChunkedBatchExecutor(int chunkSize, int parallelism, int threads) {
+        this.chunkSize = Math.max(chunkSize, 1);
+        this.parallelism = Math.max(parallelism, 1);
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("cluster-cache-batch-");
+        threadFactory.setDaemon(true);
+        this.executor = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS, new ArrayBlockingQueue<>(threads), threadFactory,
+                new ThreadPoolExecutor.CallerRunsPolicy());
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * @param keys     全部key
+     * @param loader   加载一个分片
+     * @param consumer 在调用线程中依次处理各分片的结果，顺序为分片完成的顺序
+     */
+    @SneakyThrows
+    public <K, R> void execute(List<K> keys, Function<List<K>, R> loader, Consumer<R> consumer) {
+        if (keys.size() <= chunkSize) {
+            consumer.accept(loader.apply(keys));
+            return;
+        }
+        ExecutorCompletionService<R> completionService = new ExecutorCompletionService<>(executor);
+        int from = 0;
+        int inFlight = 0;
+        try {
+            while (from < keys.size() || inFlight > 0) {
+                while (from < keys.size() && inFlight < parallelism) {
+                    List<K> chunk = keys.subList(from, Math.min(from + chunkSize, keys.size()));
+                    completionService.submit(() -> loader.apply(chunk));
+                    from += chunk.size();
+                    inFlight++;
+                }
+                Future<R> future = completionService.take();
+                inFlight--;
+                consumer.accept(future.get());
+            }
+        } catch (ExecutionException e) {
+            throw e.getCause();
+        }
+    }
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+}
@@ -1,14 +1,20 @@
 package com.antelope.clustercache.autoconfigure.aspect.processor;
 
 import com.antelope.clustercache.autoconfigure.core.CacheWrapper;
+import com.antelope.clustercache.autoconfigure.local.TwoLevelCache;
 import com.antelope.clustercache.autoconfigure.memcached.MemCache;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import net.rubyeye.xmemcached.MemcachedClient;
+import org.springframework.cache.Cache;
 import org.springframework.cache.CacheManager;
+import org.springframework.cache.support.NullValue;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -24,27 +30,27 @@ import java.util.stream.Collectors;
 public class MemcachedBatchCacheableProcessor implements AbstractBatchCacheableProcessor {
 
     private final CacheManager cacheManager;
+    private final ChunkedBatchExecutor chunkedBatchExecutor;
+
+    public MemcachedBatchCacheableProcessor(CacheManager cacheManager) {
+        this(cacheManager, new ChunkedBatchExecutor(500, 4, 8));
+    }
 
     @Override
     public Map<String, Object> mGet(String cacheName, String prefix, List<String> keyCollection) {
         try {
-            CacheWrapper cache = (CacheWrapper) cacheManager.getCache(cacheName);
-            assert cache != null;
-            MemCache memCache = (MemCache) cache.getCache();
-            MemcachedClient memcachedClient = memCache.getMemcachedClient();
+            MemCache memCache = (MemCache) remoteCache(cacheName);
             // key加前缀 k：方法入参集合原始值 v: 方法入参集合原始值加前缀
             Map<String, String> keyCollectionMap = keyCollection.stream().collect(Collectors.toMap(Function.identity(), prefix::concat, (o1, o2) -> o2));
             // 生成最终的key k：带前缀的方法入参集合原始值 v: 实际缓存key
             Map<String, String> keyMap = memCache.generateCacheKeyCollection(keyCollectionMap.values());
-            // 查询缓存 k：实际缓存key v: 缓存值
-            Map<String, Object> objectMap = memcachedClient.get(keyMap.values());
-            if (objectMap == null) {
-                return Collections.emptyMap();
-            }
-            Map<String, Object> result = new HashMap<>(objectMap.size());
+            // 分片并发查询缓存 k：实际缓存key v: 缓存值，失败的分片只影响本分片的key
+            Map<String, Object> objectMap = new HashMap<>(keyMap.size() * 4 / 3 + 1);
+            chunkedBatchExecutor.execute(new ArrayList<>(keyMap.values()), chunk -> getChunk(memCache, chunk), objectMap::putAll);
+            Map<String, Object> result = new HashMap<>(objectMap.size() * 4 / 3 + 1);
             keyCollectionMap.forEach((key, value) -> {
                 String finalKey = keyMap.get(value);
-                Optional.ofNullable(objectMap.get(finalKey)).ifPresent(o -> result.put(key, o));
+                Optional.ofNullable(memCache.unwrapStoreValue(objectMap.get(finalKey))).ifPresent(o -> result.put(key, o));
             });
             return result;
         } catch (Exception e) {
@@ -53,11 +59,62 @@ public class MemcachedBatchCacheableProcessor implements AbstractBatchCacheableP
         return Collections.emptyMap();
     }
 
+    /**
+     * 查询一个分片，失败的分片视为全部未命中，其他分片的结果照常返回
+     */
+    private Map<String, Object> getChunk(MemCache memCache, List<String> chunk) {
+        try {
+            return memCache.multiGet(chunk);
+        } catch (Exception e) {
+            log.warn("MemcachedBatchCacheableProcessor mget error!", e);
+        }
+        return Collections.emptyMap();
+    }
+
     @Override
     public void mSet(String cacheName, String prefix, Map<String, Object> data) {
+        MemCache memCache = (MemCache) remoteCache(cacheName);
+        Map<String, Object> cacheData = new LinkedHashMap<>(data.size() * 4 / 3 + 1);
+        data.forEach((key, value) -> cacheData.put(prefix.concat(key), value));
+        memCache.putAll(cacheData);
+        invalidateLocal(cacheName, cacheData.keySet());
+    }
+
+    @Override
+    public void mSetMissing(String cacheName, String prefix, Collection<String> keys, Duration ttl) {
+        MemCache memCache = (MemCache) remoteCache(cacheName);
+        if (!memCache.isAllowNullValues()) {
+            return;
+        }
+        Map<String, Object> cacheData = new LinkedHashMap<>(keys.size() * 4 / 3 + 1);
+        keys.forEach(key -> cacheData.put(prefix.concat(key), NullValue.INSTANCE));
+        memCache.putAll(cacheData, ttl);
+        invalidateLocal(cacheName, cacheData.keySet());
+    }
+
+    @Override
+    public void mEvict(String cacheName, String prefix, Collection<String> keys) {
+        MemCache memCache = (MemCache) remoteCache(cacheName);
+        List<String> cacheKeys = keys.stream().map(prefix::concat).collect(Collectors.toList());
+        memCache.evictAll(cacheKeys);
+        invalidateLocal(cacheName, cacheKeys);
+    }
+
+    private void invalidateLocal(String cacheName, Collection<String> keys) {
+        CacheWrapper cache = (CacheWrapper) cacheManager.getCache(cacheName);
+        assert cache != null;
+        if (cache.getCache() instanceof TwoLevelCache) {
+            ((TwoLevelCache) cache.getCache()).invalidate(keys);
+        }
+    }
+
+    /**
+     * 批量操作直接访问远程缓存，启用本地缓存时跳过本地缓存
+     */
+    private Cache remoteCache(String cacheName) {
         CacheWrapper cache = (CacheWrapper) cacheManager.getCache(cacheName);
         assert cache != null;
-        MemCache memCache = (MemCache) cache.getCache();
-        data.forEach((key, value) -> memCache.put(prefix.concat(key), value));
+        Cache target = cache.getCache();
+        return target instanceof TwoLevelCache ? ((TwoLevelCache) target).getRemoteCache() : target;
     }
 }
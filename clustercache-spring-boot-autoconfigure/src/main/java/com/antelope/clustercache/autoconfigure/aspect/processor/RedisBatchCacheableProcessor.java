@@ -1,36 +1,109 @@
 package com.antelope.clustercache.autoconfigure.aspect.processor;
 
 import com.antelope.clustercache.autoconfigure.core.CacheWrapper;
+import com.antelope.clustercache.autoconfigure.local.TwoLevelCache;
+import com.antelope.clustercache.autoconfigure.redis.RedisCache;
 import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.Cache;
 import org.springframework.cache.CacheManager;
+import org.springframework.cache.support.NullValue;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.stream.Collectors;
 
 /**
  * @author yaml
  * @since 2021/8/5
  */
+@Slf4j
 @AllArgsConstructor
 public class RedisBatchCacheableProcessor implements AbstractBatchCacheableProcessor {
 
     private final CacheManager redisCacheManager;
+    private final ChunkedBatchExecutor chunkedBatchExecutor;
+
+    public RedisBatchCacheableProcessor(CacheManager redisCacheManager) {
+        this(redisCacheManager, new ChunkedBatchExecutor(500, 4, 8));
+    }
 
     @Override
     public Map<String, Object> mGet(String cacheName, String prefix, List<String> keyCollection) {
-        CacheWrapper cache = (CacheWrapper) redisCacheManager.getCache(cacheName);
-        assert cache != null;
-        Map<String, Object> result = new HashMap<>(keyCollection.size());
-        keyCollection.parallelStream().forEach(key -> Optional.ofNullable(cache.get(prefix.concat(key), Object.class)).ifPresent(o -> result.put(key, o)));
+        RedisCache redisCache = (RedisCache) remoteCache(cacheName);
+        // k：方法入参集合原始值加前缀 v: 方法入参集合原始值
+        Map<String, String> keyCollectionMap = new LinkedHashMap<>(keyCollection.size() * 4 / 3 + 1);
+        keyCollection.forEach(key -> keyCollectionMap.put(prefix.concat(key), key));
+        Map<String, Object> result = new HashMap<>(keyCollectionMap.size() * 4 / 3 + 1);
+        // 分片并发 MGET，每个分片一次 MGET；空值占位视为命中，以 NullValue 返回
+        chunkedBatchExecutor.execute(new ArrayList<>(keyCollectionMap.keySet()), chunk -> getChunk(redisCache, chunk), cacheData ->
+                cacheData.forEach((key, valueWrapper) -> result.put(keyCollectionMap.get(key), Optional.ofNullable(valueWrapper.get()).orElse(NullValue.INSTANCE))));
         return result;
     }
 
+    /**
+     * 查询一个分片，失败的分片视为全部未命中，其他分片的结果照常返回
+     */
+    private Map<String, Cache.ValueWrapper> getChunk(RedisCache redisCache, List<String> chunk) {
+        try {
+            return redisCache.getAll(chunk, chunk.size());
+        } catch (Exception e) {
+            log.warn("RedisBatchCacheableProcessor mget error!", e);
+        }
+        return Collections.emptyMap();
+    }
+
     @Override
     public void mSet(String cacheName, String prefix, Map<String, Object> data) {
+        RedisCache redisCache = (RedisCache) remoteCache(cacheName);
+        Map<String, Object> cacheData = new LinkedHashMap<>(data.size() * 4 / 3 + 1);
+        data.forEach((key, value) -> cacheData.put(prefix.concat(key), value));
+        redisCache.putAll(cacheData);
+        invalidateLocal(cacheName, cacheData.keySet());
+    }
+
+    @Override
+    public void mSetMissing(String cacheName, String prefix, Collection<String> keys, Duration ttl) {
+        RedisCache redisCache = (RedisCache) remoteCache(cacheName);
+        if (!redisCache.isAllowNullValues()) {
+            return;
+        }
+        Map<String, Object> cacheData = new LinkedHashMap<>(keys.size() * 4 / 3 + 1);
+        keys.forEach(key -> cacheData.put(prefix.concat(key), NullValue.INSTANCE));
+        redisCache.putAll(cacheData, ttl);
+        invalidateLocal(cacheName, cacheData.keySet());
+    }
+
+    @Override
+    public void mEvict(String cacheName, String prefix, Collection<String> keys) {
+        RedisCache redisCache = (RedisCache) remoteCache(cacheName);
+        List<String> cacheKeys = keys.stream().map(prefix::concat).collect(Collectors.toList());
+        redisCache.evictAll(cacheKeys);
+        invalidateLocal(cacheName, cacheKeys);
+    }
+
+    private void invalidateLocal(String cacheName, Collection<String> keys) {
+        CacheWrapper cache = (CacheWrapper) redisCacheManager.getCache(cacheName);
+        assert cache != null;
+        if (cache.getCache() instanceof TwoLevelCache) {
+            ((TwoLevelCache) cache.getCache()).invalidate(keys);
+        }
+    }
+
+    /**
+     * 批量操作直接访问远程缓存，启用本地缓存时跳过本地缓存
+     */
+    private Cache remoteCache(String cacheName) {
         CacheWrapper cache = (CacheWrapper) redisCacheManager.getCache(cacheName);
         assert cache != null;
-        data.forEach((key, value) -> cache.put(prefix.concat(key), value));
+        Cache target = cache.getCache();
+        return target instanceof TwoLevelCache ? ((TwoLevelCache) target).getRemoteCache() : target;
     }
 }
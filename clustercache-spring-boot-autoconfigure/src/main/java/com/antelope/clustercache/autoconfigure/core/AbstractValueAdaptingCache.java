@@ -1,30 +1,69 @@
 package com.antelope.clustercache.autoconfigure.core;
 
 import lombok.SneakyThrows;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.support.NullValue;
 import org.springframework.core.convert.ConversionService;
-import org.springframework.core.convert.TypeDescriptor;
 import org.springframework.lang.NonNull;
-import org.springframework.util.ReflectionUtils;
+import org.springframework.lang.Nullable;
 
-import java.lang.reflect.Method;
 import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
 import java.util.concurrent.Callable;
 
 /**
  * @author yaml
  * @since 2021/8/6
  */
+@Slf4j
 public abstract class AbstractValueAdaptingCache extends org.springframework.cache.support.AbstractValueAdaptingCache {
 
+    private static final long LEASE_POLL_MIN_MILLIS = 10L;
+    private static final long LEASE_POLL_MAX_MILLIS = 200L;
+    /**
+     * 每个缓存保留的旧值副本数量上限
+     */
+    private static final int STALE_VALUE_MAX_SIZE = 10000;
+
     protected final String name;
     protected final Duration ttl;
     protected final ConversionService conversionService;
+    private final CacheKeyConverter keyConverter;
+    protected final SingleFlight singleFlight;
+    /**
+     * 分布式加载租约的有效期，null 表示不使用租约
+     */
+    protected final Duration leaseTimeout;
+    /**
+     * 提前刷新策略，null 表示不提前刷新，缓存值不包装元数据
+     */
+    protected final RefreshPolicy refreshPolicy;
+    protected final CacheRefresher cacheRefresher;
+    /**
+     * 过期时间随机抖动，null 表示不抖动
+     */
+    protected final TtlJitter ttlJitter;
+    /**
+     * 配置了 staleTtl 时保留的旧值副本，远程缓存读写失败时返回，null 表示不使用
+     */
+    private final StaleValueStore staleValues;
 
-    protected AbstractValueAdaptingCache(String name, Duration ttl, ConversionService conversionService, boolean allowNullValues) {
+    protected AbstractValueAdaptingCache(String name, Duration ttl, ConversionService conversionService, boolean allowNullValues,
+                                         Duration loadWaitTimeout, @Nullable Duration leaseTimeout,
+                                         @Nullable RefreshPolicy refreshPolicy, CacheRefresher cacheRefresher,
+                                         @Nullable TtlJitter ttlJitter, @Nullable List<CacheKeyCodec> keyCodecs) {
         super(allowNullValues);
         this.name = name;
         this.ttl = ttl;
         this.conversionService = conversionService;
+        this.keyConverter = new CacheKeyConverter(conversionService, keyCodecs);
+        this.singleFlight = new SingleFlight(loadWaitTimeout);
+        this.leaseTimeout = leaseTimeout;
+        this.refreshPolicy = refreshPolicy;
+        this.cacheRefresher = cacheRefresher;
+        this.ttlJitter = ttlJitter;
+        this.staleValues = refreshPolicy != null && refreshPolicy.getStaleTtlMillis() > 0 ? new StaleValueStore(STALE_VALUE_MAX_SIZE) : null;
     }
 
     @NonNull
@@ -37,27 +76,234 @@ public abstract class AbstractValueAdaptingCache extends org.springframework.cac
     @SneakyThrows
     @SuppressWarnings("unchecked")
     public <T> T get(@NonNull Object key, @NonNull Callable<T> callable) {
-        ValueWrapper valueWrapper = get(key);
-        if (valueWrapper != null) {
-            return (T) valueWrapper.get();
+        Object storeValue;
+        try {
+            storeValue = lookup(key);
+        } catch (Exception e) {
+            return (T) fromStoreValue(staleFallback(key, e));
+        }
+        if (storeValue != null) {
+            rememberStoreValue(key, storeValue);
+            // 已过期或临近过期时在后台通过方法调用重新加载，当前请求直接返回缓存值
+            // callable 在刷新线程中执行，调用线程的 ThreadLocal 上下文（事务、安全、请求作用域）不会传递过去
+            if (refreshPolicy != null && storeValue instanceof CacheEnvelope) {
+                CacheEnvelope envelope = (CacheEnvelope) storeValue;
+                if (refreshPolicy.isStale(envelope) || refreshPolicy.shouldRefresh(envelope)) {
+                    cacheRefresher.refresh(name.concat(":").concat(convertKey(key)), () -> load(key, callable));
+                }
+            }
+            return (T) fromStoreValue(storeValue);
+        }
+        // 同一个key同时只有一个线程执行加载
+        return singleFlight.execute(convertKey(key), () -> {
+            Object loaded = lookupAgain(key);
+            if (loaded != null) {
+                return (T) fromStoreValue(loaded);
+            }
+            return leaseTimeout == null ? load(key, callable) : loadWithLease(key, callable);
+        });
+    }
+
+    /**
+     * 未命中后到开始加载前，上一个加载线程可能已经写入缓存并结束，加载前再查询一次
+     * 查询失败视为未命中，继续加载
+     */
+    @Nullable
+    private Object lookupAgain(Object key) {
+        try {
+            Object storeValue = lookup(key);
+            if (storeValue == null || isStale(storeValue)) {
+                return null;
+            }
+            rememberStoreValue(key, storeValue);
+            return storeValue;
+        } catch (Exception e) {
+            return null;
         }
+    }
+
+    /**
+     * 持有租约的节点执行加载，其余节点在租约有效期内退避轮询缓存，超时仍未命中时自行加载
+     */
+    @SuppressWarnings("unchecked")
+    private <T> T loadWithLease(Object key, Callable<T> callable) throws InterruptedException {
+        String token = UUID.randomUUID().toString();
+        if (tryAcquireLease(key, token, leaseTimeout)) {
+            try {
+                return load(key, callable);
+            } finally {
+                releaseLease(key, token);
+            }
+        }
+        long deadline = System.currentTimeMillis() + leaseTimeout.toMillis();
+        long backoff = LEASE_POLL_MIN_MILLIS;
+        while (System.currentTimeMillis() < deadline) {
+            Thread.sleep(Math.min(backoff, Math.max(deadline - System.currentTimeMillis(), 1)));
+            ValueWrapper valueWrapper = get(key);
+            if (valueWrapper != null) {
+                return (T) valueWrapper.get();
+            }
+            backoff = Math.min(backoff * 2, LEASE_POLL_MAX_MILLIS);
+        }
+        return load(key, callable);
+    }
+
+    private <T> T load(Object key, Callable<T> callable) {
+        long start = System.currentTimeMillis();
         T value = valueFromLoader(key, callable);
-        put(key, value);
+        long loadCost = System.currentTimeMillis() - start;
+        if (staleValues == null) {
+            put(key, value, loadCost);
+            return value;
+        }
+        // 保留旧值时写入失败不影响返回已加载的值
+        try {
+            put(key, value, loadCost);
+        } catch (Exception e) {
+            log.warn("cache put error, return loaded value --> cacheName:{}, key:{}, msg:{}", name, key, e.getMessage());
+        }
+        rememberStoreValue(key, wrapCacheValue(toStoreValue(value), loadCost));
         return value;
     }
 
-    protected String convertKey(Object key) {
+    @Override
+    public void put(@NonNull Object key, @Nullable Object value) {
+        put(key, value, 0L);
+        if (staleValues != null) {
+            rememberStoreValue(key, wrapCacheValue(toStoreValue(value), 0L));
+        }
+    }
+
+    /**
+     * @param loadCost 加载耗时，单位：毫秒，用于计算提前刷新的概率
+     */
+    protected abstract void put(Object key, @Nullable Object value, long loadCost);
+
+    /**
+     * 启用提前刷新时将缓存值包装为带元数据的 {@link CacheEnvelope}，null 值不包装
+     */
+    protected Object wrapCacheValue(@Nullable Object cacheValue, long loadCost) {
+        if (refreshPolicy == null || cacheValue == null || cacheValue instanceof NullValue) {
+            return cacheValue;
+        }
+        return new CacheEnvelope(cacheValue, System.currentTimeMillis(), ttl == null ? 0 : ttl.toMillis(), loadCost);
+    }
 
-        TypeDescriptor source = TypeDescriptor.forObject(key);
-        if (conversionService.canConvert(source, TypeDescriptor.valueOf(String.class))) {
-            return conversionService.convert(key, String.class);
+    /**
+     * 没有加载方法可用于后台重新加载，已过期的旧值视为未命中；远程缓存读取失败时仍返回保留的旧值
+     */
+    @Override
+    @SneakyThrows
+    public ValueWrapper get(@NonNull Object key) {
+        Object storeValue;
+        try {
+            storeValue = lookup(key);
+        } catch (Exception e) {
+            return toValueWrapper(staleFallback(key, e));
         }
-        Method toString = ReflectionUtils.findMethod(key.getClass(), "toString");
-        if (toString != null && !Object.class.equals(toString.getDeclaringClass())) {
-            return key.toString();
+        rememberStoreValue(key, storeValue);
+        return isStale(storeValue) ? null : toValueWrapper(storeValue);
+    }
+
+    /**
+     * 远程缓存读取失败时返回保留的旧值，没有可用的旧值时抛出原异常
+     */
+    private Object staleFallback(Object key, Exception e) throws Exception {
+        Object staleValue = staleValues == null ? null : staleValues.get(convertKey(key));
+        if (staleValue == null) {
+            throw e;
         }
-        throw new IllegalStateException(
-                String.format("Cannot convert %s to String. Register a Converter or override toString().", source));
+        log.warn("cache lookup error, return last known value --> cacheName:{}, key:{}, msg:{}", name, key, e.getMessage());
+        return staleValue;
+    }
+
+    /**
+     * 记录带元数据的缓存值，保留到存储过期时间（ttl + staleTtl）
+     */
+    private void rememberStoreValue(Object key, @Nullable Object storeValue) {
+        if (staleValues == null || !(storeValue instanceof CacheEnvelope)) {
+            return;
+        }
+        CacheEnvelope envelope = (CacheEnvelope) storeValue;
+        long expireAt = envelope.getTtl() <= 0 ? Long.MAX_VALUE : envelope.getWriteTime() + envelope.getTtl() + refreshPolicy.getStaleTtlMillis();
+        staleValues.put(convertKey(key), storeValue, envelope.getWriteTime(), expireAt);
+    }
+
+    /**
+     * 删除或批量写入后丢弃对应key保留的旧值
+     */
+    protected void forgetStaleValue(Object key) {
+        if (staleValues != null) {
+            staleValues.remove(convertKey(key));
+        }
+    }
+
+    protected void forgetStaleValues() {
+        if (staleValues != null) {
+            staleValues.clear();
+        }
+    }
+
+    /**
+     * 解析批量查询得到的原始缓存值，已过期的旧值视为未命中
+     */
+    @Nullable
+    public Object unwrapStoreValue(@Nullable Object storeValue) {
+        return isStale(storeValue) ? null : CacheEnvelope.unwrap(storeValue);
+    }
+
+    protected boolean isStale(@Nullable Object storeValue) {
+        return refreshPolicy != null && storeValue instanceof CacheEnvelope && refreshPolicy.isStale((CacheEnvelope) storeValue);
+    }
+
+    /**
+     * 写入存储时使用的过期时间
+     */
+    protected Duration storeTtl() {
+        return refreshPolicy == null ? ttl : refreshPolicy.storeTtl(ttl);
+    }
+
+    /**
+     * 单个写入时使用的过期时间，每次调用随机抖动
+     */
+    protected Duration jitteredStoreTtl() {
+        return jittered(storeTtl());
+    }
+
+    protected Duration jittered(Duration ttl) {
+        return ttlJitter == null ? ttl : ttlJitter.apply(ttl);
+    }
+
+    @Override
+    protected Object fromStoreValue(@Nullable Object storeValue) {
+        return super.fromStoreValue(CacheEnvelope.unwrap(storeValue));
+    }
+
+    /**
+     * 尝试获取key的分布式加载租约
+     *
+     * @return 是否获取成功
+     */
+    protected boolean tryAcquireLease(Object key, String token, Duration timeout) {
+        return true;
+    }
+
+    /**
+     * 释放key的分布式加载租约
+     */
+    protected void releaseLease(Object key, String token) {
+    }
+
+    public SingleFlight getSingleFlight() {
+        return singleFlight;
+    }
+
+    public Duration getTtl() {
+        return ttl;
+    }
+
+    public String convertKey(Object key) {
+        return keyConverter.convert(key);
     }
 
     private static <T> T valueFromLoader(Object key, Callable<T> valueLoader) {
@@ -0,0 +1,228 @@
+package com.antelope.clustercache.autoconfigure.core;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.Serializer;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+import com.esotericsoftware.kryo.serializers.CompatibleFieldSerializer;
+import com.esotericsoftware.kryo.util.DefaultInstantiatorStrategy;
+import com.esotericsoftware.kryo.util.Pool;
+import org.objenesis.strategy.StdInstantiatorStrategy;
+import org.springframework.cache.support.NullValue;
+import org.springframework.lang.Nullable;
+import org.springframework.util.Assert;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.function.UnaryOperator;
+
+/**
+ * 紧凑二进制编解码（kryo），用于 SerialType.BINARY
+ * 注册过的类只写入类id，未注册的类首次出现时写入类名；数值使用 varint 编码；
+ * 对象按字段名兼容读写，增删字段后旧数据仍可读取
+ *
+ * @author yaml
+ * @since 2021/11/26
+ */
+public class BinaryCodec {
+
+    /**
+     * 小于该值的类id为内置类型保留
+     */
+    public static final int MIN_REGISTRATION_ID = 100;
+
+    private static final int BUFFER_SIZE = 4096;
+    /**
+     * 超过该大小的输出缓冲区不再复用
+     */
+    private static final int MAX_POOLED_BUFFER_SIZE = 1024 * 1024;
+
+    private final Map<Integer, Class<?>> registeredClasses;
+    private final Pool<Kryo> kryoPool;
+    private final Pool<Output> outputPool;
+
+    /**
+     * @param registeredClasses 类id -> 类，各节点的配置必须一致，id 不小于 {@link #MIN_REGISTRATION_ID}
+     */
+    public BinaryCodec(Map<Integer, Class<?>> registeredClasses) {
+        registeredClasses.keySet().forEach(id -> Assert.isTrue(id >= MIN_REGISTRATION_ID,
+                "binary registration id must not be less than " + MIN_REGISTRATION_ID + ": " + id));
+        this.registeredClasses = Collections.unmodifiableMap(new TreeMap<>(registeredClasses));
+        this.kryoPool = new Pool<Kryo>(true, false) {
+            @Override
+            protected Kryo create() {
+                return newKryo();
+            }
+        };
+        this.outputPool = new Pool<Output>(true, false) {
+            @Override
+            protected Output create() {
+                return new Output(BUFFER_SIZE, -1);
+            }
+        };
+    }
+
+    public byte[] serialize(@Nullable Object value) {
+        if (value == null) {
+            return new byte[0];
+        }
+        Kryo kryo = kryoPool.obtain();
+        Output output = outputPool.obtain();
+        try {
+            output.reset();
+            kryo.writeClassAndObject(output, value);
+            return output.toBytes();
+        } finally {
+            if (output.getBuffer().length > MAX_POOLED_BUFFER_SIZE) {
+                output.setBuffer(new byte[BUFFER_SIZE], -1);
+            }
+            outputPool.free(output);
+            kryoPool.free(kryo);
+        }
+    }
+
+    @Nullable
+    public Object deserialize(@Nullable byte[] bytes) {
+        if (bytes == null || bytes.length == 0) {
+            return null;
+        }
+        Kryo kryo = kryoPool.obtain();
+        try {
+            return kryo.readClassAndObject(new Input(bytes));
+        } finally {
+            kryoPool.free(kryo);
+        }
+    }
+
+    private Kryo newKryo() {
+        Kryo kryo = new Kryo();
+        kryo.setRegistrationRequired(false);
+        kryo.setDefaultSerializer(CompatibleFieldSerializer.class);
+        kryo.setInstantiatorStrategy(new DefaultInstantiatorStrategy(new StdInstantiatorStrategy()));
+        // 内置类型的注册顺序决定类id，只能追加
+        kryo.register(NullValue.class, new NullValueSerializer());
+        kryo.register(CacheEnvelope.class);
+        kryo.register(Object[].class);
+        kryo.register(ArrayList.class);
+        kryo.register(LinkedList.class);
+        kryo.register(HashMap.class);
+        kryo.register(LinkedHashMap.class);
+        kryo.register(TreeMap.class);
+        kryo.register(HashSet.class);
+        kryo.register(LinkedHashSet.class);
+        kryo.register(TreeSet.class);
+        kryo.register(Date.class);
+        kryo.register(BigDecimal.class);
+        kryo.register(BigInteger.class);
+        kryo.register(LocalDate.class);
+        kryo.register(LocalTime.class);
+        kryo.register(LocalDateTime.class);
+        kryo.register(Instant.class);
+        registerJdkCollections(kryo);
+        registeredClasses.forEach((id, clazz) -> kryo.register(clazz, id));
+        return kryo;
+    }
+
+    /**
+     * Collections 包装的集合没有公开的构造方法，按字段读写无法还原（内部集合为空或只读）
+     * Unmodifiable、Synchronized（含空的 Sorted/Navigable 集合）复制内容后写入，读取时重新包装；
+     * Empty、Singleton、Arrays.asList 使用 kryo 自带的序列化器，注册后只写入类id；注册顺序决定类id，只能追加
+     */
+    private static void registerJdkCollections(Kryo kryo) {
+        registerWrapper(kryo, Collections.unmodifiableCollection(new ArrayList<>()), ArrayList::new, Collections::unmodifiableCollection);
+        registerWrapper(kryo, Collections.unmodifiableList(new LinkedList<>()), LinkedList::new, Collections::unmodifiableList);
+        registerWrapper(kryo, Collections.unmodifiableList(new ArrayList<>()), ArrayList::new, Collections::unmodifiableList);
+        registerWrapper(kryo, Collections.unmodifiableSet(new HashSet<>()), LinkedHashSet::new, Collections::unmodifiableSet);
+        registerWrapper(kryo, Collections.unmodifiableSortedSet(new TreeSet<>()), TreeSet::new, Collections::unmodifiableSortedSet);
+        registerWrapper(kryo, Collections.unmodifiableNavigableSet(new TreeSet<>()), TreeSet::new, Collections::unmodifiableNavigableSet);
+        registerWrapper(kryo, Collections.unmodifiableMap(new HashMap<>()), LinkedHashMap::new, Collections::unmodifiableMap);
+        registerWrapper(kryo, Collections.unmodifiableSortedMap(new TreeMap<>()), TreeMap::new, Collections::unmodifiableSortedMap);
+        registerWrapper(kryo, Collections.unmodifiableNavigableMap(new TreeMap<>()), TreeMap::new, Collections::unmodifiableNavigableMap);
+        registerWrapper(kryo, Collections.synchronizedCollection(new ArrayList<>()), ArrayList::new, Collections::synchronizedCollection);
+        registerWrapper(kryo, Collections.synchronizedList(new LinkedList<>()), LinkedList::new, Collections::synchronizedList);
+        registerWrapper(kryo, Collections.synchronizedList(new ArrayList<>()), ArrayList::new, Collections::synchronizedList);
+        registerWrapper(kryo, Collections.synchronizedSet(new HashSet<>()), LinkedHashSet::new, Collections::synchronizedSet);
+        registerWrapper(kryo, Collections.synchronizedSortedSet(new TreeSet<>()), TreeSet::new, Collections::synchronizedSortedSet);
+        registerWrapper(kryo, Collections.synchronizedNavigableSet(new TreeSet<>()), TreeSet::new, Collections::synchronizedNavigableSet);
+        registerWrapper(kryo, Collections.synchronizedMap(new HashMap<>()), LinkedHashMap::new, Collections::synchronizedMap);
+        registerWrapper(kryo, Collections.synchronizedSortedMap(new TreeMap<>()), TreeMap::new, Collections::synchronizedSortedMap);
+        registerWrapper(kryo, Collections.synchronizedNavigableMap(new TreeMap<>()), TreeMap::new, Collections::synchronizedNavigableMap);
+        kryo.register(Collections.emptyList().getClass());
+        kryo.register(Collections.emptySet().getClass());
+        kryo.register(Collections.emptyMap().getClass());
+        registerWrapper(kryo, Collections.emptyNavigableSet(), TreeSet::new, set -> Collections.emptyNavigableSet());
+        registerWrapper(kryo, Collections.emptyNavigableMap(), TreeMap::new, map -> Collections.emptyNavigableMap());
+        kryo.register(Collections.singletonList(null).getClass());
+        kryo.register(Collections.singleton(null).getClass());
+        kryo.register(Collections.singletonMap(null, null).getClass());
+        kryo.register(Arrays.asList().getClass());
+    }
+
+    private static <T> void registerWrapper(Kryo kryo, T sample, UnaryOperator<T> copy, UnaryOperator<T> wrap) {
+        kryo.register(sample.getClass(), new WrapperSerializer<>(copy, wrap));
+    }
+
+    /**
+     * 写入被包装集合的副本，读取后重新包装；Synchronized 集合持有其锁复制
+     */
+    private static class WrapperSerializer<T> extends Serializer<T> {
+
+        private final UnaryOperator<T> copy;
+        private final UnaryOperator<T> wrap;
+
+        WrapperSerializer(UnaryOperator<T> copy, UnaryOperator<T> wrap) {
+            this.copy = copy;
+            this.wrap = wrap;
+        }
+
+        @Override
+        public void write(Kryo kryo, Output output, T object) {
+            T content;
+            synchronized (object) {
+                content = copy.apply(object);
+            }
+            kryo.writeClassAndObject(output, content);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public T read(Kryo kryo, Input input, Class<? extends T> type) {
+            return wrap.apply((T) kryo.readClassAndObject(input));
+        }
+    }
+
+    /**
+     * 反序列化时返回 {@link NullValue#INSTANCE}，保证空值占位可以用 == 判断
+     */
+    private static class NullValueSerializer extends Serializer<Object> {
+
+        NullValueSerializer() {
+            setImmutable(true);
+        }
+
+        @Override
+        public void write(Kryo kryo, Output output, Object object) {
+        }
+
+        @Override
+        public Object read(Kryo kryo, Input input, Class<?> type) {
+            return NullValue.INSTANCE;
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.antelope.clustercache.autoconfigure.core;
+
+import org.springframework.core.convert.converter.ConverterRegistry;
+import org.springframework.core.convert.converter.GenericConverter;
+import org.springframework.format.support.DefaultFormattingConversionService;
+
+import java.util.function.Consumer;
+
+/**
+ * 缓存配置默认使用的 ConversionService，记录默认转换器之外是否还注册或移除过转换器
+ * 未修改过时 {@link CacheKeyConverter} 对 String、数值、枚举等内置类型直接转换，结果与该 ConversionService 一致
+ *
+ * @author yaml
+ * @since 2021/12/8
+ */
+public class CacheConversionService extends DefaultFormattingConversionService {
+
+    /**
+     * 父类构造方法注册默认转换器时为 false
+     */
+    private final boolean initialized;
+    private volatile boolean customized;
+
+    public CacheConversionService() {
+        this(registry -> {
+        });
+    }
+
+    /**
+     * @param defaultConverters 额外注册的默认转换器，不视为修改
+     */
+    public CacheConversionService(Consumer<ConverterRegistry> defaultConverters) {
+        defaultConverters.accept(this);
+        this.initialized = true;
+    }
+
+    @Override
+    public void addConverter(GenericConverter converter) {
+        if (initialized) {
+            customized = true;
+        }
+        super.addConverter(converter);
+    }
+
+    @Override
+    public void removeConvertible(Class<?> sourceType, Class<?> targetType) {
+        if (initialized) {
+            customized = true;
+        }
+        super.removeConvertible(sourceType, targetType);
+    }
+
+    /**
+     * 是否在默认转换器之外注册或移除过转换器
+     */
+    public boolean isCustomized() {
+        return customized;
+    }
+}
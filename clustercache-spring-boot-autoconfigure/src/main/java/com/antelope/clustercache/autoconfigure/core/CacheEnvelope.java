@@ -0,0 +1,46 @@
+package com.antelope.clustercache.autoconfigure.core;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * 带元数据的缓存值，用于判断是否需要提前刷新
+ *
+ * @author yaml
+ * @since 2021/11/15
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class CacheEnvelope {
+    /**
+     * 缓存值
+     */
+    private Object value;
+    /**
+     * 写入时间戳，单位：毫秒
+     */
+    private long writeTime;
+    /**
+     * 过期时间，单位：毫秒，小于等于0表示永久
+     */
+    private long ttl;
+    /**
+     * 加载耗时，单位：毫秒
+     */
+    private long loadCost;
+
+    /**
+     * 距离过期的剩余时间，单位：毫秒
+     */
+    public long remainingMillis(long now) {
+        return writeTime + ttl - now;
+    }
+
+    public static Object unwrap(Object storeValue) {
+        return storeValue instanceof CacheEnvelope ? ((CacheEnvelope) storeValue).getValue() : storeValue;
+    }
+}
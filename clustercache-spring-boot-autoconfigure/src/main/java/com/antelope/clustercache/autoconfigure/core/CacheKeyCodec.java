@@ -0,0 +1,25 @@
+package com.antelope.clustercache.autoconfigure.core;
+
+import org.springframework.lang.NonNull;
+
+/**
+ * 缓存key编码扩展点，用于复合key等需要自定义字符串形式的key类型
+ * 注册为 Spring Bean 即可生效，多个实现按 {@link org.springframework.core.Ordered} 顺序匹配，优先于内置的转换规则；
+ * 每个key类型只在首次使用时匹配一次
+ *
+ * @author yaml
+ * @since 2021/12/6
+ */
+public interface CacheKeyCodec {
+
+    /**
+     * 是否处理该类型的key
+     */
+    boolean supports(@NonNull Class<?> keyType);
+
+    /**
+     * 转换为缓存key字符串，相同的key必须返回相同的结果
+     */
+    @NonNull
+    String encode(@NonNull Object key);
+}
@@ -0,0 +1,84 @@
+package com.antelope.clustercache.autoconfigure.core;
+
+import org.springframework.cache.interceptor.SimpleKey;
+import org.springframework.core.convert.ConversionService;
+import org.springframework.core.convert.TypeDescriptor;
+import org.springframework.lang.NonNull;
+import org.springframework.lang.Nullable;
+import org.springframework.util.ReflectionUtils;
+
+import java.lang.reflect.Method;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * 缓存key转换为字符串
+ * 按key类型解析一次转换方式并缓存，匹配顺序：{@link CacheKeyCodec} > String、包装数值类型、SimpleKey、枚举 > ConversionService > toString；
+ * 内置类型的直接转换只在使用未修改过的 {@link CacheConversionService} 时生效，结果与其一致，
+ * 其他 ConversionService 可能自定义了这些类型的转换，交由 ConversionService 处理
+ *
+ * @author yaml
+ * @since 2021/12/6
+ */
+public class CacheKeyConverter {
+
+    private static final TypeDescriptor STRING_TYPE = TypeDescriptor.valueOf(String.class);
+
+    private final ConversionService conversionService;
+    private final List<CacheKeyCodec> keyCodecs;
+    private final Map<Class<?>, Function<Object, String>> converters = new ConcurrentHashMap<>();
+
+    public CacheKeyConverter(ConversionService conversionService, @Nullable List<CacheKeyCodec> keyCodecs) {
+        this.conversionService = conversionService;
+        this.keyCodecs = keyCodecs == null ? Collections.emptyList() : keyCodecs;
+    }
+
+    public String convert(@NonNull Object key) {
+        return converters.computeIfAbsent(key.getClass(), this::resolve).apply(key);
+    }
+
+    private Function<Object, String> resolve(Class<?> keyType) {
+        for (CacheKeyCodec keyCodec : keyCodecs) {
+            if (keyCodec.supports(keyType)) {
+                return keyCodec::encode;
+            }
+        }
+        if (isDefaultConversionService()) {
+            if (keyType == String.class) {
+                return String.class::cast;
+            }
+            if (isBoxedNumber(keyType) || keyType == SimpleKey.class) {
+                return Object::toString;
+            }
+            if (Enum.class.isAssignableFrom(keyType)) {
+                return key -> ((Enum<?>) key).name();
+            }
+        }
+        TypeDescriptor source = TypeDescriptor.valueOf(keyType);
+        if (conversionService.canConvert(source, STRING_TYPE)) {
+            return key -> conversionService.convert(key, String.class);
+        }
+        Method toString = ReflectionUtils.findMethod(keyType, "toString");
+        if (toString != null && !Object.class.equals(toString.getDeclaringClass())) {
+            return Object::toString;
+        }
+        return key -> {
+            throw new IllegalStateException(
+                    String.format("Cannot convert %s to String. Register a Converter or override toString().", source));
+        };
+    }
+
+    private boolean isDefaultConversionService() {
+        return conversionService instanceof CacheConversionService && !((CacheConversionService) conversionService).isCustomized();
+    }
+
+    private static boolean isBoxedNumber(Class<?> keyType) {
+        return keyType == Long.class || keyType == Integer.class || keyType == Short.class || keyType == Byte.class
+                || keyType == Double.class || keyType == Float.class || keyType == BigInteger.class || keyType == BigDecimal.class;
+    }
+}
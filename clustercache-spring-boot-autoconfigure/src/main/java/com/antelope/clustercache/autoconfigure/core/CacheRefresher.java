@@ -0,0 +1,52 @@
+package com.antelope.clustercache.autoconfigure.core;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 缓存后台刷新执行器，线程数和队列均有上限，同一个key同时只有一个刷新任务，队列满时直接放弃刷新
+ * 刷新任务在独立的线程中执行，不继承提交线程的 ThreadLocal 上下文
+ *
+ * @author yaml
+ * @since 2021/11/15
+ */
+@Slf4j
+public class CacheRefresher {
+
+    private final ThreadPoolExecutor executor;
+    private final Set<String> refreshingKeys = ConcurrentHashMap.newKeySet();
+
+    public CacheRefresher(int threads, int queueCapacity) {
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("cluster-cache-refresh-");
+        threadFactory.setDaemon(true);
+        this.executor = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS, new ArrayBlockingQueue<>(queueCapacity), threadFactory);
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    public void refresh(String key, Runnable task) {
+        if (!refreshingKeys.add(key)) {
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    task.run();
+                } catch (Exception e) {
+                    log.warn("cache refresh error --> key:{}, msg:{}", key, e.getMessage());
+                } finally {
+                    refreshingKeys.remove(key);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            refreshingKeys.remove(key);
+            log.debug("cache refresh rejected --> key:{}", key);
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.antelope.clustercache.autoconfigure.core;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.parser.ParserConfig;
+import com.alibaba.fastjson.serializer.SerializerFeature;
+import com.alibaba.fastjson.util.IOUtils;
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+import org.springframework.lang.Nullable;
+
+/**
+ * fastjson 编解码，写入 @type 类型信息
+ * 读取时直接传入字节数组，由 fastjson 使用线程复用的字符数组解码，不需要调用方先构造 String
+ *
+ * @author yaml
+ * @since 2021/12/2
+ */
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public final class FastJsonCodec {
+
+    private static final byte[] EMPTY_ARRAY = new byte[0];
+    private static final ParserConfig PARSER_CONFIG = new ParserConfig();
+
+    static {
+        PARSER_CONFIG.setSafeMode(false);
+        PARSER_CONFIG.setAutoTypeSupport(true);
+    }
+
+    public static byte[] serialize(@Nullable Object value) {
+        if (value == null) {
+            return EMPTY_ARRAY;
+        }
+        return JSON.toJSONBytes(value, SerializerFeature.WriteClassName);
+    }
+
+    @Nullable
+    public static Object deserialize(@Nullable byte[] bytes) {
+        if (bytes == null || bytes.length == 0) {
+            return null;
+        }
+        return JSON.parseObject(bytes, 0, bytes.length, IOUtils.UTF8, Object.class, PARSER_CONFIG, null, JSON.DEFAULT_PARSER_FEATURE);
+    }
+}
@@ -1,29 +1,46 @@
 package com.antelope.clustercache.autoconfigure.core;
 
-import lombok.AccessLevel;
-import lombok.AllArgsConstructor;
+import com.antelope.clustercache.autoconfigure.util.HashUtil;
 import org.springframework.lang.NonNull;
 import org.springframework.lang.Nullable;
-import org.springframework.util.DigestUtils;
 import org.springframework.util.StringUtils;
 
 import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Function;
 
 /**
  * 默认缓存key生成规则：{keyPrefix}:{cacheName}:{nameVersion}:{key}
+ * 前缀（含名称版本号）只在版本号变化时构建一次；超过 {@link #KEY_MAX_LENGTH} 的 key 使用 MurmurHash3 128位哈希
  *
  * @author yaml
  * @since 2021/8/6
  */
-@AllArgsConstructor(access = AccessLevel.PRIVATE)
 public class FinallyKeyGenerator {
 
     private final String name;
     private final String keyPrefix;
     private final String keySeparator;
+    /**
+     * 不含名称版本号的前缀
+     */
+    private final Prefix basePrefix;
+    /**
+     * 最近一次使用的名称版本号前缀，版本号变化时替换
+     */
+    private volatile Prefix versionPrefix;
 
     public static final int KEY_MAX_LENGTH = 50;
 
+    private FinallyKeyGenerator(String name, String keyPrefix, String keySeparator) {
+        this.name = name;
+        this.keyPrefix = keyPrefix;
+        this.keySeparator = keySeparator;
+        this.basePrefix = buildPrefix(null);
+    }
+
     public static FinallyKeyGenerator getInstance(@NonNull String name, @Nullable String keyPrefix, @NonNull String keySeparator) {
         return new FinallyKeyGenerator(name, keyPrefix, keySeparator);
     }
@@ -36,22 +53,133 @@ public class FinallyKeyGenerator {
         return generate(key, null);
     }
 
-    public String generate(String key, String nameVersion) {
+    public String generate(@Nullable String key, @Nullable String nameVersion) {
+        Prefix prefix = prefix(nameVersion);
+        String keyPart = keyPart(prefix, key);
+        return keyPart == null ? generateSlowly(prefix, key) : prefix.value.concat(keyPart);
+    }
+
+    /**
+     * 生成 utf-8 编码的缓存key，前缀字节直接复制，ascii 字符直接写入结果数组
+     */
+    public byte[] generateBytes(@Nullable String key, @Nullable String nameVersion) {
+        Prefix prefix = prefix(nameVersion);
+        String keyPart = keyPart(prefix, key);
+        if (keyPart == null) {
+            return generateSlowly(prefix, key).getBytes(StandardCharsets.UTF_8);
+        }
+        int prefixLength = prefix.bytes.length;
+        byte[] bytes = new byte[prefixLength + keyPart.length()];
+        System.arraycopy(prefix.bytes, 0, bytes, 0, prefixLength);
+        for (int i = 0; i < keyPart.length(); i++) {
+            char c = keyPart.charAt(i);
+            if (c >= 0x80) {
+                byte[] keyBytes = keyPart.getBytes(StandardCharsets.UTF_8);
+                bytes = new byte[prefixLength + keyBytes.length];
+                System.arraycopy(prefix.bytes, 0, bytes, 0, prefixLength);
+                System.arraycopy(keyBytes, 0, bytes, prefixLength, keyBytes.length);
+                return bytes;
+            }
+            bytes[prefixLength + i] = (byte) c;
+        }
+        return bytes;
+    }
+
+    /**
+     * 批量生成缓存key，前缀只解析一次
+     *
+     * @param keyConverter 将原始key转换为字符串
+     */
+    public <T> Map<T, String> generate(@NonNull Collection<T> keys, @NonNull Function<? super T, String> keyConverter, @Nullable String nameVersion) {
+        Prefix prefix = prefix(nameVersion);
+        Map<T, String> cacheKeys = new HashMap<>(keys.size() * 4 / 3 + 1);
+        for (T key : keys) {
+            String convertedKey = keyConverter.apply(key);
+            String keyPart = keyPart(prefix, convertedKey);
+            cacheKeys.put(key, keyPart == null ? generateSlowly(prefix, convertedKey) : prefix.value.concat(keyPart));
+        }
+        return cacheKeys;
+    }
+
+    private Prefix prefix(@Nullable String nameVersion) {
+        if (StringUtils.isEmpty(nameVersion)) {
+            return basePrefix;
+        }
+        Prefix prefix = versionPrefix;
+        if (prefix == null || !nameVersion.equals(prefix.nameVersion)) {
+            prefix = buildPrefix(nameVersion);
+            versionPrefix = prefix;
+        }
+        return prefix;
+    }
+
+    private Prefix buildPrefix(@Nullable String nameVersion) {
         StringBuilder stringBuilder = new StringBuilder();
         if (!StringUtils.isEmpty(keyPrefix)) {
-            stringBuilder.append(keyPrefix.concat(keySeparator));
+            stringBuilder.append(keyPrefix).append(keySeparator);
         }
         if (!StringUtils.isEmpty(name)) {
-            stringBuilder.append(name.concat(keySeparator));
+            stringBuilder.append(name).append(keySeparator);
         }
         if (!StringUtils.isEmpty(nameVersion)) {
-            stringBuilder.append(nameVersion.concat(keySeparator));
+            stringBuilder.append(nameVersion).append(keySeparator);
+        }
+        return new Prefix(nameVersion, stringBuilder.toString());
+    }
+
+    /**
+     * 去掉空格后的key，过长时取哈希；需要裁剪首尾空白或结尾分隔符时返回 null，由 {@link #generateSlowly} 处理
+     */
+    @Nullable
+    private String keyPart(Prefix prefix, @Nullable String key) {
+        if (StringUtils.isEmpty(key) || !prefix.plain) {
+            return null;
+        }
+        String keyPart = key.length() > KEY_MAX_LENGTH ? HashUtil.murmur3Hex(key.getBytes(StandardCharsets.UTF_8)) : removeSpaces(key);
+        if (keyPart == null || keyPart.length() < keySeparator.length() || keyPart.endsWith(keySeparator)) {
+            return null;
+        }
+        return keyPart;
+    }
+
+    /**
+     * 含有其他空白字符或全是空格时返回 null
+     */
+    @Nullable
+    private static String removeSpaces(String key) {
+        int spaces = 0;
+        for (int i = 0; i < key.length(); i++) {
+            char c = key.charAt(i);
+            if (c == ' ') {
+                spaces++;
+            } else if (c < ' ') {
+                return null;
+            }
+        }
+        if (spaces == 0) {
+            return key;
+        }
+        if (spaces == key.length()) {
+            return null;
         }
+        char[] chars = new char[key.length() - spaces];
+        int length = 0;
+        for (int i = 0; i < key.length(); i++) {
+            char c = key.charAt(i);
+            if (c != ' ') {
+                chars[length++] = c;
+            }
+        }
+        return new String(chars);
+    }
+
+    private String generateSlowly(Prefix prefix, @Nullable String key) {
+        StringBuilder stringBuilder = new StringBuilder(prefix.value);
         if (!StringUtils.isEmpty(key)) {
             if (key.length() <= KEY_MAX_LENGTH) {
                 stringBuilder.append(key.replace(" ", ""));
             } else {
-                stringBuilder.append(DigestUtils.md5DigestAsHex(key.getBytes(StandardCharsets.UTF_8)));
+                stringBuilder.append(HashUtil.murmur3Hex(key.getBytes(StandardCharsets.UTF_8)));
             }
         }
         String finalKey = stringBuilder.toString().trim();
@@ -60,4 +188,21 @@ public class FinallyKeyGenerator {
         }
         return finalKey;
     }
+
+    private static class Prefix {
+        private final String nameVersion;
+        private final String value;
+        private final byte[] bytes;
+        /**
+         * 不以空白开头，拼接 key 后不需要裁剪
+         */
+        private final boolean plain;
+
+        Prefix(String nameVersion, String value) {
+            this.nameVersion = nameVersion;
+            this.value = value;
+            this.bytes = value.getBytes(StandardCharsets.UTF_8);
+            this.plain = value.isEmpty() || value.charAt(0) > ' ';
+        }
+    }
 }
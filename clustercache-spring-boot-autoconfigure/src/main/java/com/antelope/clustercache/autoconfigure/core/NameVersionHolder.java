@@ -0,0 +1,66 @@
+package com.antelope.clustercache.autoconfigure.core;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * 缓存名称版本号的本地持有者
+ * 在刷新间隔内直接返回本地版本号，超过刷新间隔后由单个线程重新加载，其余线程继续使用旧值；
+ * 未指定刷新间隔时仅在首次使用时加载，之后由外部定时调用 {@link #set(String)} 或 {@link #refresh()} 更新
+ *
+ * @author yaml
+ * @since 2021/11/8
+ */
+@Slf4j
+public class NameVersionHolder {
+
+    private final String name;
+    private final Supplier<String> loader;
+    private final long refreshIntervalMillis;
+    private final AtomicBoolean refreshing = new AtomicBoolean();
+
+    private volatile String version;
+    private volatile long refreshTime;
+
+    public NameVersionHolder(String name, Supplier<String> loader) {
+        this(name, loader, null);
+    }
+
+    public NameVersionHolder(String name, Supplier<String> loader, Duration refreshInterval) {
+        this.name = name;
+        this.loader = loader;
+        this.refreshIntervalMillis = refreshInterval == null ? Long.MAX_VALUE : refreshInterval.toMillis();
+    }
+
+    public String get() {
+        String current = version;
+        if (current == null) {
+            return refresh();
+        }
+        if (System.currentTimeMillis() - refreshTime < refreshIntervalMillis || !refreshing.compareAndSet(false, true)) {
+            return current;
+        }
+        try {
+            return refresh();
+        } catch (RuntimeException e) {
+            log.warn("name version refresh error --> cacheName:{}, msg:{}", name, e.getMessage());
+            return current;
+        } finally {
+            refreshing.set(false);
+        }
+    }
+
+    public String refresh() {
+        String loaded = loader.get();
+        set(loaded);
+        return loaded;
+    }
+
+    public void set(String version) {
+        this.version = version;
+        this.refreshTime = System.currentTimeMillis();
+    }
+}
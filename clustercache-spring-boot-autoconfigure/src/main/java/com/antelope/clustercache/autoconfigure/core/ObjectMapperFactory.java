@@ -17,8 +17,16 @@ import lombok.NoArgsConstructor;
 public class ObjectMapperFactory {
 
     public static ObjectMapper newInstance() {
-        ObjectMapper objectMapper = new ObjectMapper();
+        ObjectMapper objectMapper = newUntypedInstance();
         objectMapper.activateDefaultTyping(objectMapper.getPolymorphicTypeValidator(), ObjectMapper.DefaultTyping.NON_FINAL, JsonTypeInfo.As.PROPERTY);
+        return objectMapper;
+    }
+
+    /**
+     * 不写入 @class 类型信息，读取时需要指定类型
+     */
+    public static ObjectMapper newUntypedInstance() {
+        ObjectMapper objectMapper = new ObjectMapper();
         objectMapper.disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
         objectMapper.disable(SerializationFeature.FAIL_ON_EMPTY_BEANS);
         objectMapper.setSerializationInclusion(JsonInclude.Include.NON_NULL);
@@ -0,0 +1,69 @@
+package com.antelope.clustercache.autoconfigure.core;
+
+import lombok.Getter;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 缓存提前刷新策略
+ * 剩余过期时间进入刷新窗口，或按 XFetch 算法 {@code -loadCost * beta * ln(random) >= remaining} 命中时，在后台重新加载；
+ * 配置了 staleTtl 时，缓存值过期后仍保留 staleTtl，期间直接返回旧值并在后台重新加载，加载失败时继续返回旧值
+ *
+ * @author yaml
+ * @since 2021/11/15
+ */
+@Getter
+public class RefreshPolicy {
+    /**
+     * 刷新窗口，单位：毫秒，小于等于0表示不使用
+     */
+    private final long refreshWindowMillis;
+    /**
+     * XFetch 系数，越大越提前，小于等于0表示不使用
+     */
+    private final double beta;
+    /**
+     * 过期后允许返回旧值的时长，单位：毫秒，小于等于0表示不使用
+     */
+    private final long staleTtlMillis;
+
+    public RefreshPolicy(Duration refreshWindow, double beta) {
+        this(refreshWindow, beta, null);
+    }
+
+    public RefreshPolicy(Duration refreshWindow, double beta, Duration staleTtl) {
+        this.refreshWindowMillis = refreshWindow == null ? 0 : refreshWindow.toMillis();
+        this.beta = beta;
+        this.staleTtlMillis = staleTtl == null ? 0 : staleTtl.toMillis();
+    }
+
+    /**
+     * 是否已过期但仍在允许返回旧值的时间内
+     */
+    public boolean isStale(CacheEnvelope envelope) {
+        return staleTtlMillis > 0 && envelope.getTtl() > 0 && envelope.remainingMillis(System.currentTimeMillis()) <= 0;
+    }
+
+    /**
+     * 缓存在存储中的实际过期时间，允许返回旧值时为 ttl + staleTtl
+     */
+    public Duration storeTtl(Duration ttl) {
+        if (staleTtlMillis <= 0 || ttl == null || ttl.isZero() || ttl.isNegative()) {
+            return ttl;
+        }
+        return ttl.plusMillis(staleTtlMillis);
+    }
+
+    public boolean shouldRefresh(CacheEnvelope envelope) {
+        if (envelope.getTtl() <= 0) {
+            return false;
+        }
+        long remaining = envelope.remainingMillis(System.currentTimeMillis());
+        if (refreshWindowMillis > 0 && remaining <= refreshWindowMillis) {
+            return true;
+        }
+        return beta > 0 && envelope.getLoadCost() > 0
+                && -envelope.getLoadCost() * beta * Math.log(ThreadLocalRandom.current().nextDouble()) >= remaining;
+    }
+}
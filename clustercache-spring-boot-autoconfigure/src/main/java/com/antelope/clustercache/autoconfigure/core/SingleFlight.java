@@ -0,0 +1,90 @@
+package com.antelope.clustercache.autoconfigure.core;
+
+import lombok.SneakyThrows;
+
+import java.time.Duration;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 进程内的缓存加载合并
+ * 同一个key同一时刻只有一个线程执行加载，其余线程等待同一个结果；等待超时后各自执行加载，避免加载过慢时请求被无限阻塞
+ *
+ * @author yaml
+ * @since 2021/11/12
+ */
+public class SingleFlight {
+
+    private final ConcurrentHashMap<String, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+    private final long waitTimeoutMillis;
+
+    private final LongAdder loadCount = new LongAdder();
+    private final LongAdder coalescedCount = new LongAdder();
+    private final LongAdder timeoutCount = new LongAdder();
+
+    public SingleFlight(Duration waitTimeout) {
+        this.waitTimeoutMillis = waitTimeout.toMillis();
+    }
+
+    @SneakyThrows
+    @SuppressWarnings("unchecked")
+    public <T> T execute(String key, Callable<T> loader) {
+        CompletableFuture<Object> future = new CompletableFuture<>();
+        CompletableFuture<Object> loading = inFlight.putIfAbsent(key, future);
+        if (loading != null) {
+            coalescedCount.increment();
+            try {
+                return (T) loading.get(waitTimeoutMillis, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                timeoutCount.increment();
+                return loader.call();
+            } catch (ExecutionException e) {
+                throw e.getCause();
+            }
+        }
+        loadCount.increment();
+        try {
+            T value = loader.call();
+            future.complete(value);
+            return value;
+        } catch (Throwable e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, future);
+        }
+    }
+
+    /**
+     * 实际执行加载的次数
+     */
+    public long getLoadCount() {
+        return loadCount.sum();
+    }
+
+    /**
+     * 等待其他线程加载结果的次数
+     */
+    public long getCoalescedCount() {
+        return coalescedCount.sum();
+    }
+
+    /**
+     * 等待超时后自行加载的次数
+     */
+    public long getTimeoutCount() {
+        return timeoutCount.sum();
+    }
+
+    /**
+     * 正在加载中的key数量
+     */
+    public int getInFlightCount() {
+        return inFlight.size();
+    }
+}
@@ -0,0 +1,79 @@
+package com.antelope.clustercache.autoconfigure.core;
+
+import org.springframework.lang.Nullable;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 最近读取或写入的缓存值的本地副本，远程缓存读写失败时作为旧值返回
+ * 数量有上限，已满时不再记录新的key；超过存储过期时间（ttl + staleTtl）的副本不再返回
+ *
+ * @author yaml
+ * @since 2021/12/8
+ */
+public class StaleValueStore {
+
+    private final int maxSize;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    public StaleValueStore(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * @param writeTime 缓存值的写入时间，与已记录的相同时不重复记录
+     * @param expireAt  副本失效的时间戳，单位：毫秒
+     */
+    public void put(String key, Object storeValue, long writeTime, long expireAt) {
+        Entry entry = entries.get(key);
+        if (entry != null && entry.writeTime == writeTime) {
+            return;
+        }
+        if (entry == null && entries.size() >= maxSize) {
+            long now = System.currentTimeMillis();
+            entries.values().removeIf(e -> e.expireAt <= now);
+            if (entries.size() >= maxSize) {
+                return;
+            }
+        }
+        entries.put(key, new Entry(storeValue, writeTime, expireAt));
+    }
+
+    @Nullable
+    public Object get(String key) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.expireAt <= System.currentTimeMillis()) {
+            entries.remove(key, entry);
+            return null;
+        }
+        return entry.storeValue;
+    }
+
+    public void remove(String key) {
+        entries.remove(key);
+    }
+
+    public void clear() {
+        entries.clear();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    private static final class Entry {
+        private final Object storeValue;
+        private final long writeTime;
+        private final long expireAt;
+
+        private Entry(Object storeValue, long writeTime, long expireAt) {
+            this.storeValue = storeValue;
+            this.writeTime = writeTime;
+            this.expireAt = expireAt;
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.antelope.clustercache.autoconfigure.core;
+
+import com.antelope.clustercache.autoconfigure.util.TimeUtil;
+import org.springframework.lang.Nullable;
+import org.springframework.util.StringUtils;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 过期时间随机抖动
+ * 每次写入时在过期时间上随机增加 [0, jitter] 的时长，避免同一批写入的缓存在同一时刻集中过期
+ *
+ * @author yaml
+ * @since 2021/11/17
+ */
+public class TtlJitter {
+
+    /**
+     * 固定的抖动上限，单位：毫秒
+     */
+    private final long maxMillis;
+    /**
+     * 按过期时间百分比计算的抖动上限，如 0.1 表示 10%
+     */
+    private final double ratio;
+
+    private TtlJitter(long maxMillis, double ratio) {
+        this.maxMillis = maxMillis;
+        this.ratio = ratio;
+    }
+
+    /**
+     * 解析抖动配置，支持固定时长（如 5m）或百分比（如 10%）
+     *
+     * @return 为空或不大于0时返回 null
+     */
+    @Nullable
+    public static TtlJitter parse(@Nullable String jitter) {
+        if (StringUtils.isEmpty(jitter)) {
+            return null;
+        }
+        String value = jitter.trim();
+        if (value.endsWith("%")) {
+            double ratio = Double.parseDouble(value.substring(0, value.length() - 1)) / 100;
+            return ratio > 0 ? new TtlJitter(0, ratio) : null;
+        }
+        long maxMillis = TimeUtil.simpleParse(value).toMillis();
+        return maxMillis > 0 ? new TtlJitter(maxMillis, 0) : null;
+    }
+
+    /**
+     * 随机延长过期时间，没有过期时间时原样返回
+     */
+    public Duration apply(@Nullable Duration ttl) {
+        if (ttl == null || ttl.isZero() || ttl.isNegative()) {
+            return ttl;
+        }
+        long bound = ratio > 0 ? (long) (ttl.toMillis() * ratio) : maxMillis;
+        if (bound <= 0) {
+            return ttl;
+        }
+        return ttl.plusMillis(ThreadLocalRandom.current().nextLong(bound + 1));
+    }
+}
@@ -0,0 +1,106 @@
+package com.antelope.clustercache.autoconfigure.core;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import lombok.AllArgsConstructor;
+import lombok.NoArgsConstructor;
+import org.springframework.cache.support.NullValue;
+import org.springframework.lang.Nullable;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 绑定值类型的 json 编解码
+ * 每个缓存使用预先构建的 ObjectReader/ObjectWriter，不写入也不解析 @class 类型信息；
+ * 值的实际类型必须与绑定的类型一致，类型为 Object、接口或父类的多态字段会丢失子类信息
+ *
+ * @author yaml
+ * @since 2021/11/30
+ */
+public class TypedJsonCodec {
+
+    private static final ObjectMapper OBJECT_MAPPER = ObjectMapperFactory.newUntypedInstance();
+    private static final byte[] NULL_VALUE = "null".getBytes(StandardCharsets.UTF_8);
+    /**
+     * 带元数据的缓存值以固定的属性开头，读取时据此区分，开启或关闭提前刷新不影响已有数据的读取
+     */
+    private static final byte[] ENVELOPE_PREFIX = "{\"@e\":".getBytes(StandardCharsets.UTF_8);
+
+    private final JavaType valueType;
+    private final ObjectReader valueReader;
+    private final ObjectWriter valueWriter;
+    private final ObjectReader envelopeReader;
+    private final ObjectWriter envelopeWriter;
+
+    public TypedJsonCodec(Type valueType) {
+        this.valueType = OBJECT_MAPPER.constructType(valueType);
+        JavaType envelopeType = OBJECT_MAPPER.getTypeFactory().constructParametricType(TypedEnvelope.class, this.valueType);
+        this.valueReader = OBJECT_MAPPER.readerFor(this.valueType);
+        this.valueWriter = OBJECT_MAPPER.writerFor(this.valueType);
+        this.envelopeReader = OBJECT_MAPPER.readerFor(envelopeType);
+        this.envelopeWriter = OBJECT_MAPPER.writerFor(envelopeType);
+    }
+
+    public JavaType getValueType() {
+        return valueType;
+    }
+
+    public byte[] serialize(@Nullable Object value) throws IOException {
+        if (value == null || value instanceof NullValue) {
+            return NULL_VALUE;
+        }
+        if (value instanceof CacheEnvelope) {
+            CacheEnvelope envelope = (CacheEnvelope) value;
+            return envelopeWriter.writeValueAsBytes(new TypedEnvelope<>(envelope.getWriteTime(), envelope.getTtl(), envelope.getLoadCost(), envelope.getValue()));
+        }
+        return valueWriter.writeValueAsBytes(value);
+    }
+
+    /**
+     * json null 读取为 {@link NullValue#INSTANCE}
+     */
+    @Nullable
+    public Object deserialize(@Nullable byte[] bytes) throws IOException {
+        if (bytes == null || bytes.length == 0) {
+            return null;
+        }
+        if (startsWith(bytes, ENVELOPE_PREFIX)) {
+            TypedEnvelope<?> envelope = envelopeReader.readValue(bytes);
+            return new CacheEnvelope(envelope.value, envelope.writeTime, envelope.ttl, envelope.loadCost);
+        }
+        Object value = valueReader.readValue(bytes);
+        return value == null ? NullValue.INSTANCE : value;
+    }
+
+    private static boolean startsWith(byte[] bytes, byte[] prefix) {
+        if (bytes.length < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (bytes[i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @JsonPropertyOrder({"@e", "t", "c", "v"})
+    private static class TypedEnvelope<T> {
+        @JsonProperty("@e")
+        private long writeTime;
+        @JsonProperty("t")
+        private long ttl;
+        @JsonProperty("c")
+        private long loadCost;
+        @JsonProperty("v")
+        private T value;
+    }
+}
@@ -0,0 +1,200 @@
+package com.antelope.clustercache.autoconfigure.core;
+
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Factory;
+import org.springframework.lang.Nullable;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.unit.DataSize;
+
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * 缓存值压缩
+ * 序列化结果超过阈值时压缩，压缩数据格式：标识(1字节 0x00) + 算法(1字节) + 原始长度(4字节) + 压缩数据；
+ * json 和 binary 序列化结果都不会以 0x00 开头，所以压缩与未压缩的数据可以共存，开启或关闭压缩不影响已有数据的读取
+ *
+ * @author yaml
+ * @since 2021/11/28
+ */
+public class ValueCompressor {
+
+    private static final byte FLAG = 0x00;
+    private static final int HEADER_LENGTH = 6;
+
+    private final Algorithm algorithm;
+    private final int threshold;
+
+    public ValueCompressor(Algorithm algorithm, int threshold) {
+        if (algorithm == Algorithm.LZ4 && !ClassUtils.isPresent("net.jpountz.lz4.LZ4Factory", ValueCompressor.class.getClassLoader())) {
+            throw new IllegalStateException("compression algorithm lz4 requires org.lz4:lz4-java on the classpath");
+        }
+        this.algorithm = algorithm;
+        this.threshold = Math.max(threshold, 1);
+    }
+
+    /**
+     * @param threshold 压缩阈值，为空或不大于0时返回 null 表示不压缩
+     */
+    @Nullable
+    public static ValueCompressor of(Algorithm algorithm, @Nullable DataSize threshold) {
+        if (threshold == null || threshold.toBytes() <= 0) {
+            return null;
+        }
+        return new ValueCompressor(algorithm, (int) Math.min(threshold.toBytes(), Integer.MAX_VALUE));
+    }
+
+    /**
+     * 小于阈值或压缩后没有变小时返回原数据
+     */
+    public byte[] compress(byte[] bytes) {
+        if (bytes.length < threshold) {
+            return bytes;
+        }
+        byte[] compressed = algorithm.compress(bytes);
+        return compressed != null ? compressed : bytes;
+    }
+
+    public static boolean isCompressed(@Nullable byte[] bytes) {
+        return bytes != null && bytes.length > HEADER_LENGTH && bytes[0] == FLAG;
+    }
+
+    /**
+     * 未压缩的数据原样返回
+     */
+    public static byte[] decompress(byte[] bytes) {
+        if (!isCompressed(bytes)) {
+            return bytes;
+        }
+        int length = ((bytes[2] & 0xFF) << 24) | ((bytes[3] & 0xFF) << 16) | ((bytes[4] & 0xFF) << 8) | (bytes[5] & 0xFF);
+        return Algorithm.of(bytes[1]).decompress(bytes, length);
+    }
+
+    private static void writeHeader(byte[] out, Algorithm algorithm, int length) {
+        out[0] = FLAG;
+        out[1] = algorithm.id;
+        out[2] = (byte) (length >>> 24);
+        out[3] = (byte) (length >>> 16);
+        out[4] = (byte) (length >>> 8);
+        out[5] = (byte) length;
+    }
+
+    public enum Algorithm {
+        /**
+         * jdk 内置的 deflate，使用最快的压缩级别
+         */
+        DEFLATE((byte) 1) {
+            @Override
+            byte[] compress(byte[] bytes) {
+                Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+                try {
+                    deflater.setInput(bytes);
+                    deflater.finish();
+                    // 压缩后不小于原数据时放弃压缩，输出缓冲区不需要更大
+                    byte[] out = new byte[bytes.length];
+                    int length = HEADER_LENGTH;
+                    while (!deflater.finished() && length < out.length) {
+                        length += deflater.deflate(out, length, out.length - length);
+                    }
+                    if (!deflater.finished()) {
+                        return null;
+                    }
+                    writeHeader(out, this, bytes.length);
+                    return Arrays.copyOf(out, length);
+                } finally {
+                    deflater.end();
+                }
+            }
+
+            @Override
+            byte[] decompress(byte[] bytes, int length) {
+                Inflater inflater = new Inflater();
+                try {
+                    inflater.setInput(bytes, HEADER_LENGTH, bytes.length - HEADER_LENGTH);
+                    byte[] out = new byte[length];
+                    int offset = 0;
+                    while (!inflater.finished() && offset < length) {
+                        offset += inflater.inflate(out, offset, length - offset);
+                        if (inflater.needsInput()) {
+                            break;
+                        }
+                    }
+                    if (offset != length) {
+                        throw new IllegalStateException("Could not decompress: expect " + length + " bytes, actual " + offset);
+                    }
+                    return out;
+                } catch (DataFormatException e) {
+                    throw new IllegalStateException("Could not decompress: " + e.getMessage(), e);
+                } finally {
+                    inflater.end();
+                }
+            }
+        },
+        /**
+         * lz4，压缩率低于 deflate 但速度快得多，需要引入 org.lz4:lz4-java
+         */
+        LZ4((byte) 2) {
+            @Override
+            byte[] compress(byte[] bytes) {
+                byte[] out = Lz4Holder.compress(bytes);
+                if (out.length >= bytes.length) {
+                    return null;
+                }
+                writeHeader(out, this, bytes.length);
+                return out;
+            }
+
+            @Override
+            byte[] decompress(byte[] bytes, int length) {
+                return Lz4Holder.decompress(bytes, length);
+            }
+        };
+
+        private final byte id;
+
+        Algorithm(byte id) {
+            this.id = id;
+        }
+
+        /**
+         * @return 压缩后不小于原数据时返回 null
+         */
+        abstract byte[] compress(byte[] bytes);
+
+        abstract byte[] decompress(byte[] bytes, int length);
+
+        static Algorithm of(byte id) {
+            for (Algorithm algorithm : values()) {
+                if (algorithm.id == id) {
+                    return algorithm;
+                }
+            }
+            throw new IllegalStateException("Could not decompress: unknown compression algorithm " + id);
+        }
+    }
+
+    /**
+     * 延迟加载 lz4，未引入时不影响 deflate
+     */
+    private static final class Lz4Holder {
+        private static final LZ4Factory FACTORY = LZ4Factory.fastestInstance();
+
+        /**
+         * @return 预留了头部空间的压缩数据
+         */
+        static byte[] compress(byte[] bytes) {
+            LZ4Compressor compressor = FACTORY.fastCompressor();
+            byte[] out = new byte[HEADER_LENGTH + compressor.maxCompressedLength(bytes.length)];
+            int length = HEADER_LENGTH + compressor.compress(bytes, 0, bytes.length, out, HEADER_LENGTH);
+            return Arrays.copyOf(out, length);
+        }
+
+        static byte[] decompress(byte[] bytes, int length) {
+            byte[] out = new byte[length];
+            FACTORY.fastDecompressor().decompress(bytes, HEADER_LENGTH, out, 0, length);
+            return out;
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.antelope.clustercache.autoconfigure.local;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 本地缓存失效广播消息，一条消息合并一个发送间隔内的所有失效操作
+ *
+ * @author yaml
+ * @since 2021/11/10
+ */
+@Getter
+@Setter
+public class CacheInvalidationMessage {
+    /**
+     * 发送节点标识，节点忽略自己发出的消息
+     */
+    private String nodeId;
+    /**
+     * key: cacheName value: 需要失效的key
+     */
+    private Map<String, List<String>> evictions = new HashMap<>();
+    /**
+     * 需要清空的 cacheName
+     */
+    private Set<String> clears = new HashSet<>();
+}
@@ -0,0 +1,178 @@
+package com.antelope.clustercache.autoconfigure.local;
+
+import com.alibaba.fastjson.JSON;
+import com.antelope.clustercache.autoconfigure.ClusterCacheProperties;
+import com.antelope.clustercache.autoconfigure.core.AbstractValueAdaptingCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.Cache;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.lang.NonNull;
+import org.springframework.lang.Nullable;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 本地一级缓存的注册中心
+ * 负责为远程缓存创建 {@link TwoLevelCache}，并通过 redis pub/sub 合并广播、接收本地缓存失效消息；
+ * 没有可用的 redis 连接时只使用本地过期时间保证最终一致
+ *
+ * @author yaml
+ * @since 2021/11/10
+ */
+@Slf4j
+public class LocalCacheRegistry implements MessageListener {
+
+    private final ClusterCacheProperties.Local properties;
+    private final RedisConnectionFactory connectionFactory;
+    private final String nodeId = UUID.randomUUID().toString();
+    private final Map<String, TwoLevelCache> caches = new ConcurrentHashMap<>();
+    private final Queue<String[]> pendingInvalidations = new ConcurrentLinkedQueue<>();
+
+    private StringRedisTemplate redisTemplate;
+    private RedisMessageListenerContainer listenerContainer;
+    private ScheduledExecutorService flushScheduler;
+
+    public LocalCacheRegistry(ClusterCacheProperties.Local properties, @Nullable RedisConnectionFactory connectionFactory) {
+        this.properties = properties;
+        this.connectionFactory = connectionFactory;
+    }
+
+    /**
+     * 对启用了本地缓存的 cacheName 包装为二级缓存，其余原样返回
+     */
+    public Cache decorate(Cache cache) {
+        if (!(cache instanceof AbstractValueAdaptingCache)) {
+            return cache;
+        }
+        if (!properties.getCacheNames().isEmpty() && !properties.getCacheNames().contains(cache.getName())) {
+            return cache;
+        }
+        AbstractValueAdaptingCache remoteCache = (AbstractValueAdaptingCache) cache;
+        TwoLevelCache twoLevelCache = new TwoLevelCache(remoteCache, buildLocalCache(remoteCache.getTtl()), this);
+        caches.put(cache.getName(), twoLevelCache);
+        log.info("cacheName: {}, local cache enabled", cache.getName());
+        return twoLevelCache;
+    }
+
+    public void start() {
+        if (connectionFactory == null) {
+            log.warn("local cache invalidation broadcast disabled, no redis connection factory");
+            return;
+        }
+        redisTemplate = new StringRedisTemplate(connectionFactory);
+        listenerContainer = new RedisMessageListenerContainer();
+        listenerContainer.setConnectionFactory(connectionFactory);
+        listenerContainer.addMessageListener(this, new ChannelTopic(properties.getInvalidationChannel()));
+        listenerContainer.afterPropertiesSet();
+        listenerContainer.start();
+
+        long interval = properties.getInvalidationBatchInterval().toMillis();
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("cluster-cache-local-invalidation-");
+        threadFactory.setDaemon(true);
+        flushScheduler = Executors.newSingleThreadScheduledExecutor(threadFactory);
+        flushScheduler.scheduleWithFixedDelay(this::flush, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    public void stop() {
+        if (flushScheduler != null) {
+            flushScheduler.shutdown();
+            flush();
+        }
+        if (listenerContainer != null) {
+            try {
+                listenerContainer.destroy();
+            } catch (Exception e) {
+                log.warn("local cache listener container destroy error: {}", e.getMessage());
+            }
+        }
+    }
+
+    void publishEvict(String cacheName, String key) {
+        if (redisTemplate != null) {
+            pendingInvalidations.offer(new String[]{cacheName, key});
+        }
+    }
+
+    void publishClear(String cacheName) {
+        if (redisTemplate != null) {
+            pendingInvalidations.offer(new String[]{cacheName, null});
+        }
+    }
+
+    private void flush() {
+        if (pendingInvalidations.isEmpty()) {
+            return;
+        }
+        CacheInvalidationMessage message = new CacheInvalidationMessage();
+        message.setNodeId(nodeId);
+        String[] invalidation;
+        while ((invalidation = pendingInvalidations.poll()) != null) {
+            if (invalidation[1] == null) {
+                message.getClears().add(invalidation[0]);
+            } else {
+                message.getEvictions().computeIfAbsent(invalidation[0], k -> new ArrayList<>()).add(invalidation[1]);
+            }
+        }
+        try {
+            redisTemplate.convertAndSend(properties.getInvalidationChannel(), JSON.toJSONString(message));
+        } catch (Exception e) {
+            log.warn("local cache invalidation publish error: {}", e.getMessage());
+        }
+    }
+
+    @Override
+    public void onMessage(@NonNull Message message, @Nullable byte[] pattern) {
+        try {
+            CacheInvalidationMessage invalidationMessage = JSON.parseObject(message.getBody(), CacheInvalidationMessage.class);
+            if (invalidationMessage == null || nodeId.equals(invalidationMessage.getNodeId())) {
+                return;
+            }
+            invalidationMessage.getClears().forEach(cacheName -> Optional.ofNullable(caches.get(cacheName)).ifPresent(TwoLevelCache::clearLocal));
+            invalidationMessage.getEvictions().forEach((cacheName, keys) -> Optional.ofNullable(caches.get(cacheName)).ifPresent(cache -> cache.evictLocal(keys)));
+        } catch (Exception e) {
+            log.warn("local cache invalidation message handle error: {}", e.getMessage());
+        }
+    }
+
+    private com.github.benmanes.caffeine.cache.Cache<String, Object> buildLocalCache(Duration remoteTtl) {
+        Duration ttl = properties.getTtl();
+        if (remoteTtl != null && !remoteTtl.isZero() && !remoteTtl.isNegative() && remoteTtl.compareTo(ttl) < 0) {
+            ttl = remoteTtl;
+        }
+        Caffeine<Object, Object> builder = Caffeine.newBuilder().expireAfterWrite(ttl);
+        if (properties.getMaximumWeight() > 0) {
+            builder.maximumWeight(properties.getMaximumWeight()).weigher((key, value) -> weigh(value));
+        } else {
+            builder.maximumSize(properties.getMaximumSize());
+        }
+        return builder.build();
+    }
+
+    private static int weigh(Object value) {
+        if (value instanceof Collection) {
+            return Math.max(((Collection<?>) value).size(), 1);
+        }
+        if (value instanceof Map) {
+            return Math.max(((Map<?, ?>) value).size(), 1);
+        }
+        return 1;
+    }
+}
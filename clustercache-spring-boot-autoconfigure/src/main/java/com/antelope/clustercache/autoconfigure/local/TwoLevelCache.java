@@ -0,0 +1,145 @@
+package com.antelope.clustercache.autoconfigure.local;
+
+import com.antelope.clustercache.autoconfigure.core.AbstractValueAdaptingCache;
+import org.springframework.cache.Cache;
+import org.springframework.cache.support.NullValue;
+import org.springframework.cache.support.SimpleValueWrapper;
+import org.springframework.lang.NonNull;
+import org.springframework.lang.Nullable;
+
+import java.util.Collection;
+import java.util.concurrent.Callable;
+
+/**
+ * 二级缓存：本地缓存(L1) + 远程缓存(L2)
+ * 读取优先命中本地缓存，写入、删除、清空在操作远程缓存后通过 {@link LocalCacheRegistry} 广播给其他节点失效本地缓存
+ *
+ * @author yaml
+ * @since 2021/11/10
+ */
+public class TwoLevelCache implements Cache {
+
+    private final AbstractValueAdaptingCache remoteCache;
+    private final com.github.benmanes.caffeine.cache.Cache<String, Object> localCache;
+    private final LocalCacheRegistry registry;
+
+    TwoLevelCache(AbstractValueAdaptingCache remoteCache,
+                  com.github.benmanes.caffeine.cache.Cache<String, Object> localCache,
+                  LocalCacheRegistry registry) {
+        this.remoteCache = remoteCache;
+        this.localCache = localCache;
+        this.registry = registry;
+    }
+
+    public AbstractValueAdaptingCache getRemoteCache() {
+        return remoteCache;
+    }
+
+    @NonNull
+    @Override
+    public String getName() {
+        return remoteCache.getName();
+    }
+
+    @NonNull
+    @Override
+    public Object getNativeCache() {
+        return remoteCache.getNativeCache();
+    }
+
+    @Override
+    public ValueWrapper get(@NonNull Object key) {
+        String localKey = remoteCache.convertKey(key);
+        Object localValue = localCache.getIfPresent(localKey);
+        if (localValue != null) {
+            return new SimpleValueWrapper(fromLocalValue(localValue));
+        }
+        ValueWrapper valueWrapper = remoteCache.get(key);
+        if (valueWrapper != null) {
+            localCache.put(localKey, toLocalValue(valueWrapper.get()));
+        }
+        return valueWrapper;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(@NonNull Object key, @Nullable Class<T> type) {
+        ValueWrapper valueWrapper = get(key);
+        Object value = valueWrapper == null ? null : valueWrapper.get();
+        if (value != null && type != null && !type.isInstance(value)) {
+            throw new IllegalStateException("Cached value is not of required type [" + type.getName() + "]: " + value);
+        }
+        return (T) value;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(@NonNull Object key, @NonNull Callable<T> valueLoader) {
+        String localKey = remoteCache.convertKey(key);
+        Object localValue = localCache.getIfPresent(localKey);
+        if (localValue != null) {
+            return (T) fromLocalValue(localValue);
+        }
+        T value = remoteCache.get(key, valueLoader);
+        localCache.put(localKey, toLocalValue(value));
+        return value;
+    }
+
+    @Override
+    public void put(@NonNull Object key, @Nullable Object value) {
+        remoteCache.put(key, value);
+        String localKey = remoteCache.convertKey(key);
+        localCache.put(localKey, toLocalValue(value));
+        registry.publishEvict(getName(), localKey);
+    }
+
+    @Override
+    public ValueWrapper putIfAbsent(@NonNull Object key, @Nullable Object value) {
+        ValueWrapper valueWrapper = remoteCache.putIfAbsent(key, value);
+        invalidate(key);
+        return valueWrapper;
+    }
+
+    @Override
+    public void evict(@NonNull Object key) {
+        remoteCache.evict(key);
+        invalidate(key);
+    }
+
+    @Override
+    public void clear() {
+        remoteCache.clear();
+        localCache.invalidateAll();
+        registry.publishClear(getName());
+    }
+
+    /**
+     * 失效本地缓存并广播给其他节点，用于绕过本类直接写远程缓存的批量操作
+     */
+    public void invalidate(Collection<?> keys) {
+        keys.forEach(this::invalidate);
+    }
+
+    private void invalidate(Object key) {
+        String localKey = remoteCache.convertKey(key);
+        localCache.invalidate(localKey);
+        registry.publishEvict(getName(), localKey);
+    }
+
+    void evictLocal(Collection<String> localKeys) {
+        localCache.invalidateAll(localKeys);
+    }
+
+    void clearLocal() {
+        localCache.invalidateAll();
+    }
+
+    private static Object toLocalValue(@Nullable Object value) {
+        return value == null ? NullValue.INSTANCE : value;
+    }
+
+    @Nullable
+    private static Object fromLocalValue(Object localValue) {
+        return localValue instanceof NullValue ? null : localValue;
+    }
+}
@@ -0,0 +1,37 @@
+package com.antelope.clustercache.autoconfigure.memcached;
+
+import com.antelope.clustercache.autoconfigure.core.BinaryCodec;
+import net.rubyeye.xmemcached.transcoders.SerializingTranscoder;
+
+/**
+ * 基于 {@link BinaryCodec} 的 memcached 值序列化
+ *
+ * @author yaml
+ * @since 2021/11/26
+ */
+public class BinaryTranscoder extends SerializingTranscoder {
+
+    private final BinaryCodec codec;
+
+    public BinaryTranscoder(BinaryCodec codec) {
+        this.codec = codec;
+    }
+
+    @Override
+    protected byte[] serialize(Object object) {
+        try {
+            return codec.serialize(object);
+        } catch (Exception e) {
+            throw new RuntimeException("Could not serialize: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    protected Object deserialize(byte[] bytes) {
+        try {
+            return codec.deserialize(bytes);
+        } catch (Exception e) {
+            throw new RuntimeException("Could not deserialize: " + e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.antelope.clustercache.autoconfigure.memcached;
+
+import com.antelope.clustercache.autoconfigure.core.ValueCompressor;
+import net.rubyeye.xmemcached.transcoders.CachedData;
+import net.rubyeye.xmemcached.transcoders.CompressionMode;
+import net.rubyeye.xmemcached.transcoders.SerializingTranscoder;
+import net.rubyeye.xmemcached.transcoders.Transcoder;
+import org.springframework.lang.Nullable;
+
+/**
+ * 对序列化结果压缩的 Transcoder
+ * 只处理序列化对象（不处理字符串、数值等原始类型），客户端自带 gzip 压缩过的数据不再压缩；
+ * 读取时根据数据头判断是否需要解压，未配置压缩的缓存也能读取已压缩的数据
+ *
+ * @author yaml
+ * @since 2021/11/28
+ */
+public class CompressingTranscoder implements Transcoder<Object> {
+
+    private final Transcoder<Object> delegate;
+    @Nullable
+    private final ValueCompressor compressor;
+
+    public CompressingTranscoder(Transcoder<Object> delegate, @Nullable ValueCompressor compressor) {
+        this.delegate = delegate;
+        this.compressor = compressor;
+    }
+
+    @Override
+    public CachedData encode(Object o) {
+        CachedData data = delegate.encode(o);
+        if (compressor != null && data.getFlag() == SerializingTranscoder.SERIALIZED) {
+            data.setData(compressor.compress(data.getData()));
+        }
+        return data;
+    }
+
+    @Override
+    public Object decode(CachedData data) {
+        if (data.getFlag() == SerializingTranscoder.SERIALIZED && ValueCompressor.isCompressed(data.getData())) {
+            return delegate.decode(new CachedData(data.getFlag(), ValueCompressor.decompress(data.getData())));
+        }
+        return delegate.decode(data);
+    }
+
+    @Override
+    public void setPrimitiveAsString(boolean primitiveAsString) {
+        delegate.setPrimitiveAsString(primitiveAsString);
+    }
+
+    @Override
+    public void setPackZeros(boolean packZeros) {
+        delegate.setPackZeros(packZeros);
+    }
+
+    @Override
+    public void setCompressionThreshold(int to) {
+        delegate.setCompressionThreshold(to);
+    }
+
+    @Override
+    public boolean isPrimitiveAsString() {
+        return delegate.isPrimitiveAsString();
+    }
+
+    @Override
+    public boolean isPackZeros() {
+        return delegate.isPackZeros();
+    }
+
+    @Override
+    public void setCompressionMode(CompressionMode compressMode) {
+        delegate.setCompressionMode(compressMode);
+    }
+}
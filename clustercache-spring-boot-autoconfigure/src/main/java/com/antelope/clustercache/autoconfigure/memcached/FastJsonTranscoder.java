@@ -1,9 +1,6 @@
 package com.antelope.clustercache.autoconfigure.memcached;
 
-import com.alibaba.fastjson.JSON;
-import com.alibaba.fastjson.parser.ParserConfig;
-import com.alibaba.fastjson.serializer.SerializerFeature;
-import com.alibaba.fastjson.util.IOUtils;
+import com.antelope.clustercache.autoconfigure.core.FastJsonCodec;
 import lombok.SneakyThrows;
 import net.rubyeye.xmemcached.transcoders.SerializingTranscoder;
 import org.springframework.cache.support.NullValue;
@@ -16,13 +13,6 @@ public class FastJsonTranscoder extends SerializingTranscoder {
 
     private static final FastJsonTranscoder JSON_TRANSCODER = new FastJsonTranscoder();
 
-    private static final ParserConfig DEFAULT_REDIS_CONFIG = new ParserConfig();
-
-    static {
-        DEFAULT_REDIS_CONFIG.setSafeMode(false);
-        DEFAULT_REDIS_CONFIG.setAutoTypeSupport(true);
-    }
-
     public static FastJsonTranscoder getInstance() {
         return JSON_TRANSCODER;
     }
@@ -34,7 +24,7 @@ public class FastJsonTranscoder extends SerializingTranscoder {
             return new byte[0];
         }
         try {
-            return JSON.toJSONBytes(object, SerializerFeature.WriteClassName);
+            return FastJsonCodec.serialize(object);
         } catch (Exception e) {
             throw new RuntimeException("Could not serialize: " + e.getMessage(), e);
         }
@@ -47,7 +37,7 @@ public class FastJsonTranscoder extends SerializingTranscoder {
             return null;
         }
         try {
-            Object object = JSON.parseObject(new String(bytes, IOUtils.UTF8), Object.class, DEFAULT_REDIS_CONFIG);
+            Object object = FastJsonCodec.deserialize(bytes);
             if (object instanceof NullValue) {
                 return null;
             }
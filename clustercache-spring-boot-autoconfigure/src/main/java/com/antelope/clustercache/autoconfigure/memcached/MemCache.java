@@ -3,47 +3,91 @@ package com.antelope.clustercache.autoconfigure.memcached;
 import com.antelope.clustercache.autoconfigure.ClusterCacheException;
 import com.antelope.clustercache.autoconfigure.core.AbstractValueAdaptingCache;
 import com.antelope.clustercache.autoconfigure.core.FinallyKeyGenerator;
+import com.antelope.clustercache.autoconfigure.core.NameVersionHolder;
 import lombok.SneakyThrows;
+import lombok.extern.slf4j.Slf4j;
+import net.rubyeye.xmemcached.GetsResponse;
 import net.rubyeye.xmemcached.MemcachedClient;
+import net.rubyeye.xmemcached.transcoders.Transcoder;
 import org.springframework.cache.Cache;
 import org.springframework.cache.support.NullValue;
 import org.springframework.lang.NonNull;
 import org.springframework.util.Assert;
 
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
-import java.util.function.Function;
-import java.util.stream.Collectors;
+import java.util.concurrent.TimeUnit;
 
 import static com.antelope.clustercache.autoconfigure.Constants.KEY_PREFIX_NAME_VERSION;
+import static com.antelope.clustercache.autoconfigure.Constants.KEY_SUFFIX_LOAD_LEASE;
 import static net.rubyeye.xmemcached.MemcachedClient.DEFAULT_OP_TIMEOUT;
 
 /**
  * @author yaml
  * @since 2021/7/2
  */
+@Slf4j
 public class MemCache extends AbstractValueAdaptingCache {
 
+    /**
+     * memcached 超过30天的过期时间按 unix 时间戳处理，写入后立即过期
+     */
+    static final long MAX_EXPIRE_SECONDS = TimeUnit.DAYS.toSeconds(30);
+
     private final MemcachedClient memcachedClient;
     private final FinallyKeyGenerator keyGenerator;
+    private final NameVersionHolder nameVersionHolder;
+    private final String keySeparator;
+    private final boolean batchWriteNoReply;
+    private final boolean batchWriteVerify;
+    private final Transcoder<Object> transcoder;
 
     protected MemCache(@NonNull String name,
                        @NonNull MemcachedClient memcachedClient,
                        @NonNull MemCachedConfiguration cacheConfig) {
-        super(name, cacheConfig.getTtl(), cacheConfig.getConversionService(), cacheConfig.isCacheNullValues());
+        super(name, cacheConfig.getTtl(), cacheConfig.getConversionService(), cacheConfig.isCacheNullValues(),
+                cacheConfig.getLoadWaitTimeout(), cacheConfig.getLeaseTimeout(), cacheConfig.getRefreshPolicy(), cacheConfig.getCacheRefresher(),
+                cacheConfig.getTtlJitter(), cacheConfig.getKeyCodecs());
+        this.keySeparator = cacheConfig.getKeySeparator();
+        this.batchWriteNoReply = cacheConfig.isBatchWriteNoReply();
+        this.batchWriteVerify = cacheConfig.isBatchWriteVerify();
         this.memcachedClient = memcachedClient;
+        this.transcoder = newTranscoder(memcachedClient, cacheConfig);
         this.keyGenerator = FinallyKeyGenerator.getInstance(name, cacheConfig.getKeyPrefix(), cacheConfig.getKeySeparator());
+        this.nameVersionHolder = new NameVersionHolder(name, this::loadNameVersion);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Transcoder<Object> newTranscoder(MemcachedClient memcachedClient, MemCachedConfiguration cacheConfig) {
+        Transcoder<Object> transcoder = cacheConfig.getValueTranscoder() != null ? cacheConfig.getValueTranscoder() : memcachedClient.getTranscoder();
+        return new CompressingTranscoder(transcoder, cacheConfig.getValueCompressor());
     }
 
     public MemcachedClient getMemcachedClient() {
         return memcachedClient;
     }
 
+    /**
+     * 使用缓存的 transcoder 批量查询
+     *
+     * @param cacheKeys 实际缓存key
+     * @return k: 实际缓存key v: 缓存值，不存在的key不包含在内
+     */
+    @SneakyThrows
+    public Map<String, Object> multiGet(@NonNull Collection<String> cacheKeys) {
+        Map<String, Object> values = memcachedClient.get(cacheKeys, transcoder);
+        return values == null ? Collections.emptyMap() : values;
+    }
+
 
     @Override
     @SneakyThrows
     protected Object lookup(@NonNull Object key) {
-        return deserializeCacheValue(memcachedClient.get(generateCacheKey(key)));
+        return deserializeCacheValue(memcachedClient.get(generateCacheKey(key), transcoder));
     }
 
     private String generateCacheKey(Object key, String nameVersion) {
@@ -55,23 +99,31 @@ public class MemCache extends AbstractValueAdaptingCache {
     }
 
     public <T> Map<T, String> generateCacheKeyCollection(Collection<T> keyCollection) {
-        String nameVersion = getOrInitNameVersion();
-        return keyCollection.stream().collect(Collectors.toMap(Function.identity(), key -> generateCacheKey(key, nameVersion), (o1, o2) -> o2));
+        return keyGenerator.generate(keyCollection, this::convertKey, getOrInitNameVersion());
     }
 
-    private String generateNameVersionKey() {
+    public String generateNameVersionKey() {
         return keyGenerator.generate(KEY_PREFIX_NAME_VERSION);
     }
 
-    @SneakyThrows
     private String getOrInitNameVersion() {
-        String nameVersionKey = generateNameVersionKey();
-        Object version = memcachedClient.get(nameVersionKey);
+        return nameVersionHolder.get();
+    }
+
+    /**
+     * 使用批量查询到的版本号刷新本地名称版本号，版本号不存在时初始化
+     */
+    public void refreshNameVersion(Object version) {
         if (version == null) {
-            version = "1";
-            memcachedClient.incr(nameVersionKey, 0, 1, DEFAULT_OP_TIMEOUT, 0);
+            nameVersionHolder.refresh();
+            return;
         }
-        return version.toString();
+        nameVersionHolder.set(version.toString());
+    }
+
+    @SneakyThrows
+    private String loadNameVersion() {
+        return String.valueOf(memcachedClient.incr(generateNameVersionKey(), 0, 1, DEFAULT_OP_TIMEOUT, 0));
     }
 
     @NonNull
@@ -83,11 +135,68 @@ public class MemCache extends AbstractValueAdaptingCache {
 
     @Override
     @SneakyThrows
-    public void put(@NonNull Object key, Object value) {
+    protected void put(@NonNull Object key, Object value, long loadCost) {
         if (value == null && !this.isAllowNullValues()) {
             throw ClusterCacheException.create(String.format("Cache '%s' not allow 'null' values.", name));
         }
-        memcachedClient.set(generateCacheKey(key), (int) this.ttl.getSeconds(), serializeCacheValue(value));
+        memcachedClient.set(generateCacheKey(key), expireSeconds(jitteredStoreTtl()), wrapCacheValue(serializeCacheValue(value), loadCost), transcoder);
+    }
+
+    /**
+     * 批量写入缓存
+     */
+    public void putAll(@NonNull Map<?, ?> values) {
+        putAll(values, storeTtl());
+    }
+
+    /**
+     * 使用指定的过期时间批量写入缓存，如空值占位使用较短的过期时间
+     * 名称版本号只解析一次；启用 noreply 时不等待每个 set 的响应，写入在连接上连续发送
+     */
+    @SneakyThrows
+    public void putAll(@NonNull Map<?, ?> values, @NonNull Duration ttl) {
+        String nameVersion = getOrInitNameVersion();
+        List<String> cacheKeys = new ArrayList<>(values.size());
+        for (Map.Entry<?, ?> entry : values.entrySet()) {
+            if (entry.getValue() == null && !this.isAllowNullValues()) {
+                throw ClusterCacheException.create(String.format("Cache '%s' not allow 'null' values.", name));
+            }
+            forgetStaleValue(entry.getKey());
+            String cacheKey = generateCacheKey(entry.getKey(), nameVersion);
+            int exp = expireSeconds(jittered(ttl));
+            Object cacheValue = wrapCacheValue(serializeCacheValue(entry.getValue()), 0L);
+            if (batchWriteNoReply) {
+                memcachedClient.setWithNoReply(cacheKey, exp, cacheValue, transcoder);
+                cacheKeys.add(cacheKey);
+            } else {
+                memcachedClient.set(cacheKey, exp, cacheValue, transcoder);
+            }
+        }
+        if (batchWriteVerify && !cacheKeys.isEmpty()) {
+            verifyBatchWrite(cacheKeys);
+        }
+    }
+
+    /**
+     * noreply 写入没有响应，通过一次批量查询确认写入结果
+     */
+    @SneakyThrows
+    private void verifyBatchWrite(List<String> cacheKeys) {
+        int missing = cacheKeys.size() - multiGet(cacheKeys).size();
+        if (missing > 0) {
+            log.warn("cacheName: {} batch write not completed, {} of {} keys missing", name, missing, cacheKeys.size());
+        }
+    }
+
+    /**
+     * 转换为 memcached 的过期秒数：不超过30天，不足1秒按1秒（0表示永不过期），没有过期时间时为0
+     */
+    static int expireSeconds(Duration ttl) {
+        if (ttl.isZero() || ttl.isNegative()) {
+            return (int) ttl.getSeconds();
+        }
+        long seconds = ttl.getNano() > 0 ? ttl.getSeconds() + 1 : ttl.getSeconds();
+        return (int) Math.min(seconds, MAX_EXPIRE_SECONDS);
     }
 
     @Override
@@ -99,16 +208,57 @@ public class MemCache extends AbstractValueAdaptingCache {
     @SneakyThrows
     public void evict(@NonNull Object key) {
         Assert.notNull(key, "Key must not be null!");
+        forgetStaleValue(key);
         memcachedClient.delete(generateCacheKey(key));
     }
 
+    /**
+     * 批量删除缓存，名称版本号只解析一次；启用 noreply 时不等待每个 delete 的响应
+     */
+    @SneakyThrows
+    public void evictAll(@NonNull Collection<?> keys) {
+        String nameVersion = getOrInitNameVersion();
+        for (Object key : keys) {
+            forgetStaleValue(key);
+            String cacheKey = generateCacheKey(key, nameVersion);
+            if (batchWriteNoReply) {
+                memcachedClient.deleteWithNoReply(cacheKey);
+            } else {
+                memcachedClient.delete(cacheKey);
+            }
+        }
+    }
+
     @Override
     @SneakyThrows
     public void clear() {
-        memcachedClient.incr(generateNameVersionKey(), 1L, 1L, DEFAULT_OP_TIMEOUT, 0);
+        forgetStaleValues();
+        long version = memcachedClient.incr(generateNameVersionKey(), 1L, 1L, DEFAULT_OP_TIMEOUT, 0);
+        nameVersionHolder.set(String.valueOf(version));
     }
 
 
+    @Override
+    @SneakyThrows
+    protected boolean tryAcquireLease(Object key, String token, Duration timeout) {
+        int exp = (int) Math.max(TimeUnit.MILLISECONDS.toSeconds(timeout.toMillis() + 999), 1);
+        return memcachedClient.add(generateLeaseKey(key), exp, token);
+    }
+
+    @Override
+    @SneakyThrows
+    protected void releaseLease(Object key, String token) {
+        String leaseKey = generateLeaseKey(key);
+        GetsResponse<Object> response = memcachedClient.gets(leaseKey);
+        if (response != null && token.equals(response.getValue())) {
+            memcachedClient.delete(leaseKey, response.getCas(), DEFAULT_OP_TIMEOUT);
+        }
+    }
+
+    private String generateLeaseKey(Object key) {
+        return generateCacheKey(key).concat(keySeparator).concat(KEY_SUFFIX_LOAD_LEASE);
+    }
+
     private Object deserializeCacheValue(Object value) {
         if (isAllowNullValues() && value instanceof NullValue) {
             return NullValue.INSTANCE;
@@ -1,12 +1,20 @@
 package com.antelope.clustercache.autoconfigure.memcached;
 
+import com.antelope.clustercache.autoconfigure.core.CacheConversionService;
+import com.antelope.clustercache.autoconfigure.core.CacheKeyCodec;
+import com.antelope.clustercache.autoconfigure.core.CacheRefresher;
+import com.antelope.clustercache.autoconfigure.core.RefreshPolicy;
+import com.antelope.clustercache.autoconfigure.core.TtlJitter;
+import com.antelope.clustercache.autoconfigure.core.ValueCompressor;
 import lombok.Getter;
 import lombok.Setter;
 import lombok.experimental.Accessors;
+import net.rubyeye.xmemcached.transcoders.Transcoder;
 import org.springframework.core.convert.ConversionService;
-import org.springframework.format.support.DefaultFormattingConversionService;
 
 import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
 
 /**
  * @author yaml
@@ -17,25 +25,90 @@ import java.time.Duration;
 @Accessors(chain = true)
 public class MemCachedConfiguration {
 
+    private static final CacheRefresher DEFAULT_CACHE_REFRESHER = new CacheRefresher(4, 1000);
+
     private Duration ttl;
     private boolean cacheNullValues;
     private String keyPrefix;
     private String keySeparator;
     private ConversionService conversionService;
+    /**
+     * 名称版本号本地缓存的异步刷新间隔
+     */
+    private Duration nameVersionRefreshInterval;
+    /**
+     * 缓存未命中时等待其他线程加载结果的最长时间
+     */
+    private Duration loadWaitTimeout;
+    /**
+     * 分布式加载租约的有效期，null 表示不使用租约
+     */
+    private Duration leaseTimeout;
+    /**
+     * 提前刷新策略，null 表示不提前刷新
+     */
+    private RefreshPolicy refreshPolicy;
+    /**
+     * 提前刷新使用的后台执行器
+     */
+    private CacheRefresher cacheRefresher;
+    /**
+     * 过期时间随机抖动，null 表示不抖动
+     */
+    private TtlJitter ttlJitter;
+    /**
+     * 批量写入是否使用 noreply，不等待每个 set 的响应
+     */
+    private boolean batchWriteNoReply;
+    /**
+     * noreply 批量写入后是否批量查询确认写入结果
+     */
+    private boolean batchWriteVerify;
+    /**
+     * 缓存值压缩，null 表示不压缩
+     */
+    private ValueCompressor valueCompressor;
+    /**
+     * 缓存值的 transcoder，null 表示使用客户端的 transcoder
+     */
+    private Transcoder<Object> valueTranscoder;
+    /**
+     * 自定义的缓存key编码，优先于内置的转换规则
+     */
+    private List<CacheKeyCodec> keyCodecs;
 
-    private MemCachedConfiguration(Duration ttl, Boolean cacheNullValues, String keyPrefix, String keySeparator, ConversionService conversionService) {
+    private MemCachedConfiguration(Duration ttl, Boolean cacheNullValues, String keyPrefix, String keySeparator, ConversionService conversionService,
+                                   Duration nameVersionRefreshInterval, Duration loadWaitTimeout, Duration leaseTimeout,
+                                   RefreshPolicy refreshPolicy, CacheRefresher cacheRefresher, TtlJitter ttlJitter,
+                                   boolean batchWriteNoReply, boolean batchWriteVerify, ValueCompressor valueCompressor,
+                                   Transcoder<Object> valueTranscoder, List<CacheKeyCodec> keyCodecs) {
         this.ttl = ttl;
         this.cacheNullValues = cacheNullValues;
         this.keyPrefix = keyPrefix;
         this.keySeparator = keySeparator;
         this.conversionService = conversionService;
+        this.nameVersionRefreshInterval = nameVersionRefreshInterval;
+        this.loadWaitTimeout = loadWaitTimeout;
+        this.leaseTimeout = leaseTimeout;
+        this.refreshPolicy = refreshPolicy;
+        this.cacheRefresher = cacheRefresher;
+        this.ttlJitter = ttlJitter;
+        this.batchWriteNoReply = batchWriteNoReply;
+        this.batchWriteVerify = batchWriteVerify;
+        this.valueCompressor = valueCompressor;
+        this.valueTranscoder = valueTranscoder;
+        this.keyCodecs = keyCodecs;
     }
 
     public static MemCachedConfiguration defaultCacheConfig() {
-        return new MemCachedConfiguration(Duration.ZERO, true, "", ":", new DefaultFormattingConversionService());
+        return new MemCachedConfiguration(Duration.ZERO, true, "", ":", new CacheConversionService(), Duration.ofSeconds(1L),
+                Duration.ofSeconds(3L), null, null, DEFAULT_CACHE_REFRESHER, null, true, false, null, null, Collections.emptyList());
     }
 
     public MemCachedConfiguration entryTtl(Duration ttl) {
-        return new MemCachedConfiguration(ttl, this.cacheNullValues, this.keyPrefix, this.keySeparator, this.conversionService);
+        return new MemCachedConfiguration(ttl, this.cacheNullValues, this.keyPrefix, this.keySeparator, this.conversionService,
+                this.nameVersionRefreshInterval, this.loadWaitTimeout, this.leaseTimeout,
+                this.refreshPolicy, this.cacheRefresher, this.ttlJitter, this.batchWriteNoReply, this.batchWriteVerify, this.valueCompressor, this.valueTranscoder,
+                this.keyCodecs);
     }
 }
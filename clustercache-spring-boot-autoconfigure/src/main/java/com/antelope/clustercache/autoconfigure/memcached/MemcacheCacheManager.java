@@ -2,34 +2,53 @@ package com.antelope.clustercache.autoconfigure.memcached;
 
 import com.antelope.clustercache.autoconfigure.annotion.CacheExpire;
 import com.antelope.clustercache.autoconfigure.core.CacheWrapper;
+import com.antelope.clustercache.autoconfigure.core.TtlJitter;
+import com.antelope.clustercache.autoconfigure.core.TypedJsonCodec;
+import com.antelope.clustercache.autoconfigure.core.ValueCompressor;
+import com.antelope.clustercache.autoconfigure.local.LocalCacheRegistry;
 import com.antelope.clustercache.autoconfigure.util.CacheUtil;
 import com.antelope.clustercache.autoconfigure.util.TimeUtil;
 import lombok.extern.slf4j.Slf4j;
 import net.rubyeye.xmemcached.MemcachedClient;
 import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.InitializingBean;
 import org.springframework.cache.Cache;
 import org.springframework.cache.transaction.AbstractTransactionSupportingCacheManager;
 import org.springframework.context.ApplicationContext;
 import org.springframework.context.ApplicationContextAware;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.util.StringUtils;
+import org.springframework.util.unit.DataSize;
 
+import java.lang.reflect.Type;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 /**
  * @author yaml
  * @since 2021/6/29
  */
 @Slf4j
-public class MemcacheCacheManager extends AbstractTransactionSupportingCacheManager implements ApplicationContextAware, InitializingBean {
+public class MemcacheCacheManager extends AbstractTransactionSupportingCacheManager implements ApplicationContextAware, InitializingBean, DisposableBean {
 
     private ApplicationContext applicationContext;
     private final MemcachedClient memcachedClient;
     private final MemCachedConfiguration defaultCacheConfiguration;
     private final Map<String, MemCachedConfiguration> initialCacheConfiguration = new LinkedHashMap<>();
+    private final List<MemCache> memCaches = new CopyOnWriteArrayList<>();
+    private ScheduledExecutorService nameVersionScheduler;
+    private LocalCacheRegistry localCacheRegistry;
+    private boolean typedValues;
 
 
     public MemcacheCacheManager(MemcachedClient memcachedClient, MemCachedConfiguration defaultCacheConfiguration) {
@@ -45,8 +64,63 @@ public class MemcacheCacheManager extends AbstractTransactionSupportingCacheMana
     @Override
     public void afterPropertiesSet() {
         Map<String, CacheExpire> cacheExpireMap = CacheUtil.resolveCacheExpire(applicationContext);
-        cacheExpireMap.forEach(this::add);
+        Map<String, Type> valueTypes = typedValues ? CacheUtil.resolveValueTypes(applicationContext) : Collections.emptyMap();
+        cacheExpireMap.forEach((cacheName, cacheExpire) -> add(cacheName, cacheExpire, valueTypes.get(cacheName)));
         super.afterPropertiesSet();
+        // 启动时一次批量查询初始化所有缓存的名称版本号，之后定时异步刷新
+        refreshNameVersions();
+        long interval = defaultCacheConfiguration.getNameVersionRefreshInterval().toMillis();
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("cluster-cache-name-version-");
+        threadFactory.setDaemon(true);
+        nameVersionScheduler = Executors.newSingleThreadScheduledExecutor(threadFactory);
+        nameVersionScheduler.scheduleWithFixedDelay(this::refreshNameVersions, interval, interval, TimeUnit.MILLISECONDS);
+        if (localCacheRegistry != null) {
+            localCacheRegistry.start();
+        }
+    }
+
+    @Override
+    public void destroy() {
+        if (nameVersionScheduler != null) {
+            nameVersionScheduler.shutdownNow();
+        }
+        if (localCacheRegistry != null) {
+            localCacheRegistry.stop();
+        }
+    }
+
+    /**
+     * 设置后对缓存启用本地一级缓存
+     */
+    public void setLocalCacheRegistry(LocalCacheRegistry localCacheRegistry) {
+        this.localCacheRegistry = localCacheRegistry;
+    }
+
+    /**
+     * 设置后按方法返回类型为使用 jackson 序列化的缓存绑定值类型
+     */
+    public void setTypedValues(boolean typedValues) {
+        this.typedValues = typedValues;
+    }
+
+    @Override
+    protected Cache decorateCache(Cache cache) {
+        Cache decorated = localCacheRegistry == null ? cache : localCacheRegistry.decorate(cache);
+        return super.decorateCache(decorated);
+    }
+
+    private void refreshNameVersions() {
+        if (memCaches.isEmpty()) {
+            return;
+        }
+        try {
+            Map<String, MemCache> nameVersionKeyMap = new HashMap<>(memCaches.size() * 4 / 3 + 1);
+            memCaches.forEach(memCache -> nameVersionKeyMap.put(memCache.generateNameVersionKey(), memCache));
+            Map<String, Object> versions = memcachedClient.get(nameVersionKeyMap.keySet());
+            nameVersionKeyMap.forEach((key, memCache) -> memCache.refreshNameVersion(versions == null ? null : versions.get(key)));
+        } catch (Exception e) {
+            log.warn("name version refresh error: {}", e.getMessage());
+        }
     }
 
     @Override
@@ -56,6 +130,7 @@ public class MemcacheCacheManager extends AbstractTransactionSupportingCacheMana
             MemCache memCache = new MemCache(name, this.memcachedClient, config);
             memCaches.add(memCache);
         });
+        this.memCaches.addAll(memCaches);
         return memCaches;
     }
 
@@ -65,13 +140,35 @@ public class MemcacheCacheManager extends AbstractTransactionSupportingCacheMana
         return new CacheWrapper(cache);
     }
 
-    private void add(String cacheName, CacheExpire cacheExpire) {
+    private void add(String cacheName, CacheExpire cacheExpire, Type inferredValueType) {
         if (cacheName == null || "".equals(cacheName.trim())) {
             return;
         }
         MemCachedConfiguration cacheConfiguration = this.defaultCacheConfiguration;
         if (cacheExpire != null) {
             cacheConfiguration = cacheConfiguration.entryTtl(TimeUtil.simpleParse(cacheExpire.expire()));
+            if (cacheExpire.loadLease()) {
+                cacheConfiguration.setLeaseTimeout(TimeUtil.simpleParse(cacheExpire.leaseTimeout()));
+            }
+            cacheConfiguration.setRefreshPolicy(CacheUtil.resolveRefreshPolicy(cacheExpire));
+            if (!StringUtils.isEmpty(cacheExpire.jitter())) {
+                cacheConfiguration.setTtlJitter(TtlJitter.parse(cacheExpire.jitter()));
+            }
+            if (!StringUtils.isEmpty(cacheExpire.compressThreshold())) {
+                cacheConfiguration.setValueCompressor(ValueCompressor.of(cacheExpire.compressAlgorithm(), DataSize.parse(cacheExpire.compressThreshold())));
+            }
+        }
+        Type valueType = cacheExpire != null && cacheExpire.valueType() != Object.class ? cacheExpire.valueType() : inferredValueType;
+        if (valueType != null && memcachedClient.getTranscoder() instanceof JacksonJsonTranscoder) {
+            if (cacheConfiguration == this.defaultCacheConfiguration) {
+                cacheConfiguration = cacheConfiguration.entryTtl(cacheConfiguration.getTtl());
+            }
+            TypedJsonTranscoder transcoder = new TypedJsonTranscoder(new TypedJsonCodec(valueType));
+            if (cacheConfiguration.getValueCompressor() != null) {
+                transcoder.setCompressionThreshold(Integer.MAX_VALUE);
+            }
+            cacheConfiguration.setValueTranscoder(transcoder);
+            log.info("cacheName: {}, value type: {}", cacheName, valueType.getTypeName());
         }
         initialCacheConfiguration.put(cacheName, cacheConfiguration);
         log.info("cacheName: {}, expire: {}", cacheName, cacheConfiguration.getTtl());
@@ -0,0 +1,37 @@
+package com.antelope.clustercache.autoconfigure.memcached;
+
+import com.antelope.clustercache.autoconfigure.core.TypedJsonCodec;
+import net.rubyeye.xmemcached.transcoders.SerializingTranscoder;
+
+/**
+ * 基于 {@link TypedJsonCodec} 的 memcached 值序列化，每个缓存一个实例
+ *
+ * @author yaml
+ * @since 2021/11/30
+ */
+public class TypedJsonTranscoder extends SerializingTranscoder {
+
+    private final TypedJsonCodec codec;
+
+    public TypedJsonTranscoder(TypedJsonCodec codec) {
+        this.codec = codec;
+    }
+
+    @Override
+    protected byte[] serialize(Object object) {
+        try {
+            return codec.serialize(object);
+        } catch (Exception e) {
+            throw new RuntimeException("Could not write JSON as " + codec.getValueType() + ": " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    protected Object deserialize(byte[] bytes) {
+        try {
+            return codec.deserialize(bytes);
+        } catch (Exception e) {
+            throw new RuntimeException("Could not read JSON as " + codec.getValueType() + ": " + e.getMessage(), e);
+        }
+    }
+}
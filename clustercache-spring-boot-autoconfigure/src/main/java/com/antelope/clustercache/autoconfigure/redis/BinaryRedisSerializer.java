@@ -0,0 +1,39 @@
+package com.antelope.clustercache.autoconfigure.redis;
+
+import com.antelope.clustercache.autoconfigure.core.BinaryCodec;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+import org.springframework.lang.Nullable;
+
+/**
+ * 基于 {@link BinaryCodec} 的 redis 值序列化
+ *
+ * @author yaml
+ * @since 2021/11/26
+ */
+public class BinaryRedisSerializer implements RedisSerializer<Object> {
+
+    private final BinaryCodec codec;
+
+    public BinaryRedisSerializer(BinaryCodec codec) {
+        this.codec = codec;
+    }
+
+    @Override
+    public byte[] serialize(@Nullable Object value) throws SerializationException {
+        try {
+            return codec.serialize(value);
+        } catch (Exception e) {
+            throw new SerializationException("Could not serialize: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public Object deserialize(@Nullable byte[] bytes) throws SerializationException {
+        try {
+            return codec.deserialize(bytes);
+        } catch (Exception e) {
+            throw new SerializationException("Could not deserialize: " + e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.antelope.clustercache.autoconfigure.redis;
+
+import com.antelope.clustercache.autoconfigure.core.ValueCompressor;
+import org.springframework.data.redis.serializer.RedisElementReader;
+import org.springframework.data.redis.serializer.RedisElementWriter;
+import org.springframework.data.redis.serializer.RedisSerializationContext;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.util.ByteUtils;
+import org.springframework.lang.Nullable;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 对序列化结果压缩的 SerializationPair
+ * 读取时根据数据头判断是否需要解压，未配置压缩的缓存也能读取已压缩的数据；
+ * 指定了序列化器时 {@link #serialize(Object)}、{@link #deserialize(byte[])} 直接按字节数组读写，不复制数据
+ *
+ * @author yaml
+ * @since 2021/11/28
+ */
+public class CompressingSerializationPair implements RedisSerializationContext.SerializationPair<Object> {
+
+    private final RedisSerializationContext.SerializationPair<Object> delegate;
+    @Nullable
+    private final RedisSerializer<Object> serializer;
+    @Nullable
+    private final ValueCompressor compressor;
+
+    public CompressingSerializationPair(RedisSerializationContext.SerializationPair<Object> delegate, @Nullable ValueCompressor compressor) {
+        this(delegate, null, compressor);
+    }
+
+    /**
+     * @param serializer 与 delegate 对应的序列化器，为空时通过 delegate 按 ByteBuffer 读写
+     */
+    public CompressingSerializationPair(RedisSerializationContext.SerializationPair<Object> delegate, @Nullable RedisSerializer<Object> serializer,
+                                        @Nullable ValueCompressor compressor) {
+        this.delegate = delegate;
+        this.serializer = serializer;
+        this.compressor = compressor;
+    }
+
+    public byte[] serialize(Object value) {
+        byte[] bytes = serializer != null ? serializer.serialize(value) : toBytes(delegate.write(value));
+        return compressor == null || bytes == null ? bytes : compressor.compress(bytes);
+    }
+
+    public Object deserialize(byte[] bytes) {
+        byte[] plain = ValueCompressor.decompress(bytes);
+        return serializer != null ? serializer.deserialize(plain) : delegate.read(ByteBuffer.wrap(plain));
+    }
+
+    @Override
+    public RedisElementReader<Object> getReader() {
+        return buffer -> deserialize(toBytes(buffer));
+    }
+
+    @Override
+    public RedisElementWriter<Object> getWriter() {
+        return value -> ByteBuffer.wrap(serialize(value));
+    }
+
+    /**
+     * 数组完整包装的 ByteBuffer 直接返回底层数组，避免复制
+     */
+    static byte[] toBytes(ByteBuffer buffer) {
+        if (buffer.hasArray() && buffer.arrayOffset() == 0 && buffer.position() == 0 && buffer.remaining() == buffer.array().length) {
+            return buffer.array();
+        }
+        return ByteUtils.getBytes(buffer);
+    }
+}
@@ -1,30 +1,59 @@
 package com.antelope.clustercache.autoconfigure.redis;
 
+import com.antelope.clustercache.autoconfigure.ClusterCacheException;
+import com.antelope.clustercache.autoconfigure.core.TtlJitter;
 import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.redis.cache.RedisCacheWriter;
+import org.springframework.data.redis.connection.RedisClusterConnection;
+import org.springframework.data.redis.connection.RedisClusterNode;
 import org.springframework.data.redis.connection.RedisConnection;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.data.redis.connection.RedisStringCommands;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.ScanOptions;
 import org.springframework.data.redis.core.types.Expiration;
 import org.springframework.lang.NonNull;
 import org.springframework.lang.Nullable;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.util.Assert;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
 import java.util.Map;
-import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 import java.util.function.Function;
 
 /**
  * @author yaml
  * @since 2021/8/6
  */
+@Slf4j
 @Setter
 public class DefaultRedisCacheWriter implements RedisCacheWriter {
 
+    public static final int DEFAULT_SCAN_COUNT = 1000;
+
+    private static final byte[] REMOVE_IF_EQUALS_SCRIPT =
+            "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('del', KEYS[1]) else return 0 end".getBytes(StandardCharsets.UTF_8);
+
+    private static final ExecutorService CLEAN_EXECUTOR = Executors.newSingleThreadExecutor(cleanThreadFactory());
+
     private RedisConnectionFactory connectionFactory;
+    /**
+     * clean 时每次 SCAN 的 COUNT 以及每批 UNLINK 的key数量
+     */
+    private int scanCount = DEFAULT_SCAN_COUNT;
 
     public static DefaultRedisCacheWriter getInstance(RedisConnectionFactory connectionFactory) {
         Assert.notNull(connectionFactory, "ConnectionFactory must not be null!");
@@ -33,16 +62,35 @@ public class DefaultRedisCacheWriter implements RedisCacheWriter {
         return defaultRedisCacheWriter;
     }
 
+    /**
+     * 批量写入，有过期时间时使用 pipeline 发送 SET key value PX ttl，一次网络往返且写入即带过期时间
+     */
     public void mSet(@NonNull String name, @NonNull Map<byte[], byte[]> keyValues, @Nullable Duration ttl) {
-        execute(name, connection -> {
-            if (shouldExpireWithin(ttl)) {
-                connection.mSet(keyValues);
-                keyValues.keySet().forEach(key -> connection.expire(key, ttl.toMillis() / 1000));
-            } else {
-                connection.mSet(keyValues);
-            }
-            return "OK";
-        });
+        mSet(name, keyValues, ttl, null);
+    }
+
+    /**
+     * 批量写入，每个key的过期时间分别随机抖动，避免同一批次同时过期
+     */
+    public void mSet(@NonNull String name, @NonNull Map<byte[], byte[]> keyValues, @Nullable Duration ttl, @Nullable TtlJitter jitter) {
+
+        Assert.notNull(name, "Name must not be null!");
+        Assert.notNull(keyValues, "KeyValues must not be null!");
+
+        if (keyValues.isEmpty()) {
+            return;
+        }
+        if (!shouldExpireWithin(ttl)) {
+            execute(name, connection -> connection.mSet(keyValues));
+            return;
+        }
+        if (jitter == null) {
+            Expiration expiration = Expiration.from(ttl.toMillis(), TimeUnit.MILLISECONDS);
+            executePipelined(name, connection -> keyValues.forEach((key, value) -> connection.set(key, value, expiration, RedisStringCommands.SetOption.upsert())));
+            return;
+        }
+        executePipelined(name, connection -> keyValues.forEach((key, value) ->
+                connection.set(key, value, Expiration.from(jitter.apply(ttl).toMillis(), TimeUnit.MILLISECONDS), RedisStringCommands.SetOption.upsert())));
     }
 
     public void hmSet(@NonNull String name, @NonNull byte[] key, @NonNull Map<byte[], byte[]> hashes, @Nullable Duration ttl) {
@@ -84,6 +132,22 @@ public class DefaultRedisCacheWriter implements RedisCacheWriter {
         return execute(name, connection -> connection.get(key));
     }
 
+    /**
+     * 使用 MGET 批量查询，一次网络往返
+     *
+     * @return 与keys顺序一一对应的结果，未命中的位置为null
+     */
+    public List<byte[]> getAll(@NonNull String name, @NonNull byte[][] keys) {
+
+        Assert.notNull(name, "Name must not be null!");
+        Assert.notNull(keys, "Keys must not be null!");
+
+        if (keys.length == 0) {
+            return Collections.emptyList();
+        }
+        return execute(name, connection -> connection.mGet(keys));
+    }
+
     @Override
     public byte[] putIfAbsent(@NonNull String name, @NonNull byte[] key, @NonNull byte[] value, @Nullable Duration ttl) {
 
@@ -104,6 +168,41 @@ public class DefaultRedisCacheWriter implements RedisCacheWriter {
         });
     }
 
+    /**
+     * SET key value NX PX ttl
+     *
+     * @return 是否写入成功
+     */
+    public boolean setIfAbsent(@NonNull String name, @NonNull byte[] key, @NonNull byte[] value, @NonNull Duration ttl) {
+
+        Assert.notNull(name, "Name must not be null!");
+        Assert.notNull(key, "Key must not be null!");
+        Assert.notNull(value, "Value must not be null!");
+
+        Boolean result = execute(name, connection -> connection.set(key, value, Expiration.from(ttl.toMillis(), TimeUnit.MILLISECONDS), RedisStringCommands.SetOption.ifAbsent()));
+        return Boolean.TRUE.equals(result);
+    }
+
+    /**
+     * 仅当key的值等于value时删除，用于释放租约
+     */
+    public void removeIfEquals(@NonNull String name, @NonNull byte[] key, @NonNull byte[] value) {
+
+        Assert.notNull(name, "Name must not be null!");
+        Assert.notNull(key, "Key must not be null!");
+        Assert.notNull(value, "Value must not be null!");
+
+        execute(name, connection -> connection.eval(REMOVE_IF_EQUALS_SCRIPT, ReturnType.INTEGER, 1, key, value));
+    }
+
+    public Long incr(@NonNull String name, @NonNull byte[] key) {
+
+        Assert.notNull(name, "Name must not be null!");
+        Assert.notNull(key, "Key must not be null!");
+
+        return execute(name, connection -> connection.incr(key));
+    }
+
     @Override
     public void remove(@NonNull String name, @NonNull byte[] key) {
 
@@ -113,20 +212,88 @@ public class DefaultRedisCacheWriter implements RedisCacheWriter {
         execute(name, connection -> connection.del(key));
     }
 
+    /**
+     * 批量删除，使用 pipeline 发送 UNLINK，一次网络往返且由 redis 后台线程释放内存
+     */
+    public void removeAll(@NonNull String name, @NonNull byte[][] keys) {
+
+        Assert.notNull(name, "Name must not be null!");
+        Assert.notNull(keys, "Keys must not be null!");
+
+        if (keys.length == 0) {
+            return;
+        }
+        executePipelined(name, connection -> {
+            for (byte[] key : keys) {
+                connection.unlink(key);
+            }
+        });
+    }
+
     @Override
     public void clean(@NonNull String name, @NonNull byte[] pattern) {
+        doClean(name, pattern);
+    }
+
+    /**
+     * 异步清理，在单独的线程中执行 SCAN + UNLINK
+     *
+     * @return 删除的key数量
+     */
+    public CompletableFuture<Long> cleanAsync(@NonNull String name, @NonNull byte[] pattern) {
+        return CompletableFuture.supplyAsync(() -> doClean(name, pattern), CLEAN_EXECUTOR);
+    }
+
+    /**
+     * 使用 SCAN 增量遍历匹配的key并分批 UNLINK，避免 KEYS 与大批量 DEL 阻塞 redis；集群模式下遍历每个 master 节点
+     */
+    private long doClean(String name, byte[] pattern) {
 
         Assert.notNull(name, "Name must not be null!");
         Assert.notNull(pattern, "Pattern must not be null!");
 
-        execute(name, connection -> {
-
-            byte[][] keys = Optional.ofNullable(connection.keys(pattern)).orElse(Collections.emptySet()).toArray(new byte[0][]);
-            if (keys.length > 0) {
-                connection.del(keys);
+        ScanOptions scanOptions = ScanOptions.scanOptions().match(new String(pattern, StandardCharsets.UTF_8)).count(scanCount).build();
+        long deleted = execute(name, connection -> {
+            if (!(connection instanceof RedisClusterConnection)) {
+                return scanAndUnlink(name, connection, connection.scan(scanOptions));
             }
-            return "OK";
+            RedisClusterConnection clusterConnection = (RedisClusterConnection) connection;
+            long count = 0;
+            for (RedisClusterNode node : clusterConnection.clusterGetNodes()) {
+                if (node.isMaster()) {
+                    count += scanAndUnlink(name, connection, clusterConnection.scan(node, scanOptions));
+                }
+            }
+            return count;
         });
+        log.info("cache clean finished --> cacheName:{}, deleted:{}", name, deleted);
+        return deleted;
+    }
+
+    private long scanAndUnlink(String name, RedisConnection connection, Cursor<byte[]> cursor) {
+        long deleted = 0;
+        List<byte[]> keys = new ArrayList<>(scanCount);
+        try (Cursor<byte[]> c = cursor) {
+            while (c.hasNext()) {
+                keys.add(c.next());
+                if (keys.size() >= scanCount) {
+                    deleted += unlink(connection, keys);
+                    log.debug("cache clean progress --> cacheName:{}, deleted:{}", name, deleted);
+                }
+            }
+        } catch (IOException e) {
+            throw new ClusterCacheException("cache clean cursor close error: " + e.getMessage());
+        }
+        return deleted + unlink(connection, keys);
+    }
+
+    private static long unlink(RedisConnection connection, List<byte[]> keys) {
+        if (keys.isEmpty()) {
+            return 0;
+        }
+        Long count = connection.unlink(keys.toArray(new byte[0][]));
+        keys.clear();
+        return count == null ? 0 : count;
     }
 
     private <T> T execute(String name, Function<RedisConnection, T> callback) {
@@ -139,6 +306,26 @@ public class DefaultRedisCacheWriter implements RedisCacheWriter {
         }
     }
 
+    private List<Object> executePipelined(String name, Consumer<RedisConnection> callback) {
+
+        return execute(name, connection -> {
+            connection.openPipeline();
+            try {
+                callback.accept(connection);
+            } catch (RuntimeException e) {
+                connection.closePipeline();
+                throw e;
+            }
+            return connection.closePipeline();
+        });
+    }
+
+    private static ThreadFactory cleanThreadFactory() {
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("cluster-cache-clean-");
+        threadFactory.setDaemon(true);
+        return threadFactory;
+    }
+
     private static boolean shouldExpireWithin(@Nullable Duration ttl) {
         return ttl != null && !ttl.isZero() && !ttl.isNegative();
     }
@@ -0,0 +1,33 @@
+package com.antelope.clustercache.autoconfigure.redis;
+
+import com.antelope.clustercache.autoconfigure.core.FastJsonCodec;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+import org.springframework.lang.Nullable;
+
+/**
+ * 基于 {@link FastJsonCodec} 的 redis 值序列化，与 GenericFastJsonRedisSerializer 格式相同，读取时不创建中间的 String
+ *
+ * @author yaml
+ * @since 2021/12/2
+ */
+public class FastJsonRedisSerializer implements RedisSerializer<Object> {
+
+    @Override
+    public byte[] serialize(@Nullable Object value) throws SerializationException {
+        try {
+            return FastJsonCodec.serialize(value);
+        } catch (Exception e) {
+            throw new SerializationException("Could not serialize: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public Object deserialize(@Nullable byte[] bytes) throws SerializationException {
+        try {
+            return FastJsonCodec.deserialize(bytes);
+        } catch (Exception e) {
+            throw new SerializationException("Could not deserialize: " + e.getMessage(), e);
+        }
+    }
+}
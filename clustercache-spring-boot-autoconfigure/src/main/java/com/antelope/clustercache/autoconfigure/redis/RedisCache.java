@@ -2,36 +2,65 @@ package com.antelope.clustercache.autoconfigure.redis;
 
 import com.antelope.clustercache.autoconfigure.core.AbstractValueAdaptingCache;
 import com.antelope.clustercache.autoconfigure.core.FinallyKeyGenerator;
+import com.antelope.clustercache.autoconfigure.core.NameVersionHolder;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.cache.Cache;
 import org.springframework.cache.support.NullValue;
 import org.springframework.cache.support.SimpleValueWrapper;
 import org.springframework.data.redis.cache.RedisCacheWriter;
 import org.springframework.data.redis.serializer.JdkSerializationRedisSerializer;
-import org.springframework.data.redis.util.ByteUtils;
 import org.springframework.lang.NonNull;
 import org.springframework.lang.Nullable;
 import org.springframework.util.ObjectUtils;
 
-import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.antelope.clustercache.autoconfigure.Constants.KEY_PREFIX_NAME_VERSION;
+import static com.antelope.clustercache.autoconfigure.Constants.KEY_SUFFIX_LOAD_LEASE;
 
 /**
  * @author yaml
  * @since 2021/8/6
  */
+@Slf4j
 public class RedisCache extends AbstractValueAdaptingCache {
 
     private static final byte[] BINARY_NULL_VALUE = new JdkSerializationRedisSerializer().serialize(NullValue.INSTANCE);
+    private static final byte[] INITIAL_NAME_VERSION = "1".getBytes(StandardCharsets.UTF_8);
 
-    private final RedisCacheWriter cacheWriter;
+    private final DefaultRedisCacheWriter cacheWriter;
     private final RedisCacheConfiguration cacheConfig;
+    private final CompressingSerializationPair valueSerializationPair;
     private final FinallyKeyGenerator keyGenerator;
+    private final NameVersionHolder nameVersionHolder;
+    /**
+     * key 使用默认的 utf-8 字符串序列化时由 keyGenerator 直接生成字节
+     */
+    private final boolean utf8Keys;
 
-    protected RedisCache(@NonNull String name, @NonNull RedisCacheWriter cacheWriter, @NonNull RedisCacheConfiguration cacheConfig) {
+    protected RedisCache(@NonNull String name, @NonNull DefaultRedisCacheWriter cacheWriter, @NonNull RedisCacheConfiguration cacheConfig) {
 
-        super(name, cacheConfig.getTtl(), cacheConfig.getConversionService(), cacheConfig.isCacheNullValues());
+        super(name, cacheConfig.getTtl(), cacheConfig.getConversionService(), cacheConfig.isCacheNullValues(),
+                cacheConfig.getLoadWaitTimeout(), cacheConfig.getLeaseTimeout(), cacheConfig.getRefreshPolicy(), cacheConfig.getCacheRefresher(),
+                cacheConfig.getTtlJitter(), cacheConfig.getKeyCodecs());
         this.cacheWriter = cacheWriter;
         this.cacheConfig = cacheConfig;
+        this.valueSerializationPair = new CompressingSerializationPair(cacheConfig.getValueSerializationPair(), cacheConfig.getValueSerializer(),
+                cacheConfig.getValueCompressor());
         this.keyGenerator = FinallyKeyGenerator.getInstance(name, cacheConfig.getKeyPrefix(), cacheConfig.getKeySeparator());
+        this.nameVersionHolder = cacheConfig.isNameVersionEnabled()
+                ? new NameVersionHolder(name, this::loadNameVersion, cacheConfig.getNameVersionRefreshInterval())
+                : null;
+        this.utf8Keys = cacheConfig.getKeySerializationPair() == RedisCacheManager.STRING_PAIR;
+        if (nameVersionHolder != null && (ttl == null || ttl.isZero() || ttl.isNegative())) {
+            log.warn("cacheName: {} enable name version without ttl, entries of old versions will never expire", name);
+        }
     }
 
     @Override
@@ -43,6 +72,76 @@ public class RedisCache extends AbstractValueAdaptingCache {
         return deserializeCacheValue(value);
     }
 
+    /**
+     * 批量查询缓存，按 batchSize 分批，每批一次 MGET
+     *
+     * @return 按入参顺序排列的命中结果，未命中的key不包含在内
+     */
+    public <K> Map<K, Cache.ValueWrapper> getAll(@NonNull Collection<K> keys) {
+        return getAll(keys, cacheConfig.getBatchSize());
+    }
+
+    /**
+     * 使用指定的批次大小批量查询缓存，调用方已自行分片时传入分片大小，整个分片一次 MGET
+     *
+     * @return 按入参顺序排列的命中结果，未命中的key不包含在内
+     */
+    public <K> Map<K, Cache.ValueWrapper> getAll(@NonNull Collection<K> keys, int batchSize) {
+        List<K> keyList = new ArrayList<>(keys);
+        Map<K, Cache.ValueWrapper> result = new LinkedHashMap<>(keyList.size() * 4 / 3 + 1);
+        batchSize = Math.max(batchSize, 1);
+        for (int from = 0; from < keyList.size(); from += batchSize) {
+            List<K> batch = keyList.subList(from, Math.min(from + batchSize, keyList.size()));
+            String nameVersion = getNameVersion();
+            byte[][] cacheKeys = new byte[batch.size()][];
+            for (int i = 0; i < cacheKeys.length; i++) {
+                cacheKeys[i] = createAndConvertCacheKey(batch.get(i), nameVersion);
+            }
+            List<byte[]> values = cacheWriter.getAll(name, cacheKeys);
+            if (values == null) {
+                continue;
+            }
+            for (int i = 0; i < cacheKeys.length; i++) {
+                byte[] value = values.get(i);
+                if (value == null) {
+                    continue;
+                }
+                Object storeValue = deserializeCacheValue(value);
+                if (!isStale(storeValue)) {
+                    result.put(batch.get(i), toValueWrapper(storeValue));
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 批量写入缓存，按 batchSize 分批，每批一次 pipeline
+     */
+    public void putAll(@NonNull Map<?, ?> values) {
+        putAll(values, storeTtl());
+    }
+
+    /**
+     * 使用指定的过期时间批量写入缓存，如空值占位使用较短的过期时间
+     */
+    public void putAll(@NonNull Map<?, ?> values, @Nullable Duration ttl) {
+        Map<byte[], byte[]> batch = new LinkedHashMap<>();
+        int batchSize = Math.max(cacheConfig.getBatchSize(), 1);
+        String nameVersion = getNameVersion();
+        for (Map.Entry<?, ?> entry : values.entrySet()) {
+            forgetStaleValue(entry.getKey());
+            batch.put(createAndConvertCacheKey(entry.getKey(), nameVersion), serializeCacheValue(wrapCacheValue(checkCacheValue(entry.getValue()), 0L)));
+            if (batch.size() >= batchSize) {
+                cacheWriter.mSet(name, batch, ttl, ttlJitter);
+                batch = new LinkedHashMap<>();
+            }
+        }
+        if (!batch.isEmpty()) {
+            cacheWriter.mSet(name, batch, ttl, ttlJitter);
+        }
+    }
+
     @NonNull
     @Override
     public String getName() {
@@ -56,12 +155,8 @@ public class RedisCache extends AbstractValueAdaptingCache {
     }
 
     @Override
-    public void put(@NonNull Object key, @Nullable Object value) {
-        Object cacheValue = preProcessCacheValue(value);
-        if (!isAllowNullValues() && cacheValue == null) {
-            throw new IllegalArgumentException(String.format("Cache '%s' does not allow 'null' values. Avoid storing null via '@Cacheable(unless=\"#result == null\")' or configure RedisCache to allow 'null' via RedisCacheConfiguration.", name));
-        }
-        cacheWriter.put(name, createAndConvertCacheKey(key), serializeCacheValue(cacheValue), cacheConfig.getTtl());
+    protected void put(@NonNull Object key, @Nullable Object value, long loadCost) {
+        cacheWriter.put(name, createAndConvertCacheKey(key), serializeCacheValue(wrapCacheValue(checkCacheValue(value), loadCost)), jitteredStoreTtl());
     }
 
     @Override
@@ -71,7 +166,8 @@ public class RedisCache extends AbstractValueAdaptingCache {
         if (!isAllowNullValues() && cacheValue == null) {
             return get(key);
         }
-        byte[] result = cacheWriter.putIfAbsent(name, createAndConvertCacheKey(key), serializeCacheValue(cacheValue), cacheConfig.getTtl());
+        forgetStaleValue(key);
+        byte[] result = cacheWriter.putIfAbsent(name, createAndConvertCacheKey(key), serializeCacheValue(wrapCacheValue(cacheValue, 0L)), jitteredStoreTtl());
         if (result == null) {
             return null;
         }
@@ -81,15 +177,62 @@ public class RedisCache extends AbstractValueAdaptingCache {
 
     @Override
     public void evict(@NonNull Object key) {
+        forgetStaleValue(key);
         cacheWriter.remove(name, createAndConvertCacheKey(key));
     }
 
+    /**
+     * 批量删除缓存，按 batchSize 分批，每批一次 pipeline
+     */
+    public void evictAll(@NonNull Collection<?> keys) {
+        keys.forEach(this::forgetStaleValue);
+        List<?> keyList = new ArrayList<>(keys);
+        int batchSize = Math.max(cacheConfig.getBatchSize(), 1);
+        for (int from = 0; from < keyList.size(); from += batchSize) {
+            List<?> batch = keyList.subList(from, Math.min(from + batchSize, keyList.size()));
+            String nameVersion = getNameVersion();
+            byte[][] cacheKeys = new byte[batch.size()][];
+            for (int i = 0; i < cacheKeys.length; i++) {
+                cacheKeys[i] = createAndConvertCacheKey(batch.get(i), nameVersion);
+            }
+            cacheWriter.removeAll(name, cacheKeys);
+        }
+    }
+
     @Override
     public void clear() {
+        forgetStaleValues();
+        if (nameVersionHolder != null) {
+            Long version = cacheWriter.incr(name, createNameVersionKey());
+            nameVersionHolder.set(String.valueOf(version));
+            return;
+        }
         byte[] pattern = conversionService.convert(createCacheKey("*"), byte[].class);
+        if (cacheConfig.isClearAsync()) {
+            cacheWriter.cleanAsync(name, pattern).whenComplete((deleted, e) -> {
+                if (e != null) {
+                    log.error("cache clear error --> cacheName:{}, msg:{}", name, e.getMessage(), e);
+                }
+            });
+            return;
+        }
         cacheWriter.clean(name, pattern);
     }
 
+    @Override
+    protected boolean tryAcquireLease(Object key, String token, Duration timeout) {
+        return cacheWriter.setIfAbsent(name, createLeaseKey(key), token.getBytes(StandardCharsets.UTF_8), timeout);
+    }
+
+    @Override
+    protected void releaseLease(Object key, String token) {
+        cacheWriter.removeIfEquals(name, createLeaseKey(key), token.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private byte[] createLeaseKey(Object key) {
+        return serializeCacheKey(createCacheKey(key).concat(cacheConfig.getKeySeparator()).concat(KEY_SUFFIX_LOAD_LEASE));
+    }
+
     @Nullable
     protected Object preProcessCacheValue(@Nullable Object value) {
 
@@ -100,8 +243,16 @@ public class RedisCache extends AbstractValueAdaptingCache {
         return isAllowNullValues() ? NullValue.INSTANCE : null;
     }
 
+    private Object checkCacheValue(@Nullable Object value) {
+        Object cacheValue = preProcessCacheValue(value);
+        if (!isAllowNullValues() && cacheValue == null) {
+            throw new IllegalArgumentException(String.format("Cache '%s' does not allow 'null' values. Avoid storing null via '@Cacheable(unless=\"#result == null\")' or configure RedisCache to allow 'null' via RedisCacheConfiguration.", name));
+        }
+        return cacheValue;
+    }
+
     protected byte[] serializeCacheKey(String cacheKey) {
-        return ByteUtils.getBytes(cacheConfig.getKeySerializationPair().write(cacheKey));
+        return CompressingSerializationPair.toBytes(cacheConfig.getKeySerializationPair().write(cacheKey));
     }
 
     protected byte[] serializeCacheValue(Object value) {
@@ -110,7 +261,7 @@ public class RedisCache extends AbstractValueAdaptingCache {
             return BINARY_NULL_VALUE;
         }
 
-        return ByteUtils.getBytes(cacheConfig.getValueSerializationPair().write(value));
+        return valueSerializationPair.serialize(value);
     }
 
     @Nullable
@@ -119,14 +270,39 @@ public class RedisCache extends AbstractValueAdaptingCache {
             return NullValue.INSTANCE;
         }
 
-        return cacheConfig.getValueSerializationPair().read(ByteBuffer.wrap(value));
+        return valueSerializationPair.deserialize(value);
     }
 
     protected String createCacheKey(Object key) {
-        return keyGenerator.generate(convertKey(key));
+        return keyGenerator.generate(convertKey(key), getNameVersion());
+    }
+
+    @Nullable
+    private String getNameVersion() {
+        return nameVersionHolder == null ? null : nameVersionHolder.get();
+    }
+
+    private byte[] createNameVersionKey() {
+        return serializeCacheKey(keyGenerator.generate(KEY_PREFIX_NAME_VERSION));
+    }
+
+    private String loadNameVersion() {
+        byte[] nameVersionKey = createNameVersionKey();
+        byte[] version = cacheWriter.get(name, nameVersionKey);
+        if (version == null) {
+            version = cacheWriter.putIfAbsent(name, nameVersionKey, INITIAL_NAME_VERSION, null);
+        }
+        return new String(version == null ? INITIAL_NAME_VERSION : version, StandardCharsets.UTF_8);
     }
 
     private byte[] createAndConvertCacheKey(Object key) {
-        return serializeCacheKey(createCacheKey(key));
+        return createAndConvertCacheKey(key, getNameVersion());
+    }
+
+    private byte[] createAndConvertCacheKey(Object key, @Nullable String nameVersion) {
+        if (utf8Keys) {
+            return keyGenerator.generateBytes(convertKey(key), nameVersion);
+        }
+        return serializeCacheKey(keyGenerator.generate(convertKey(key), nameVersion));
     }
 }
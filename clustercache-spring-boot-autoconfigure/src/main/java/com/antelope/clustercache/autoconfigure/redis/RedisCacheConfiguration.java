@@ -1,5 +1,11 @@
 package com.antelope.clustercache.autoconfigure.redis;
 
+import com.antelope.clustercache.autoconfigure.core.CacheConversionService;
+import com.antelope.clustercache.autoconfigure.core.CacheKeyCodec;
+import com.antelope.clustercache.autoconfigure.core.CacheRefresher;
+import com.antelope.clustercache.autoconfigure.core.RefreshPolicy;
+import com.antelope.clustercache.autoconfigure.core.TtlJitter;
+import com.antelope.clustercache.autoconfigure.core.ValueCompressor;
 import lombok.Getter;
 import lombok.Setter;
 import lombok.experimental.Accessors;
@@ -8,12 +14,14 @@ import org.springframework.core.convert.ConversionService;
 import org.springframework.core.convert.converter.ConverterRegistry;
 import org.springframework.data.redis.serializer.JdkSerializationRedisSerializer;
 import org.springframework.data.redis.serializer.RedisSerializationContext;
+import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
-import org.springframework.format.support.DefaultFormattingConversionService;
 import org.springframework.util.Assert;
 
 import java.nio.charset.StandardCharsets;
 import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
 
 /**
  * @author yaml
@@ -23,14 +31,66 @@ import java.time.Duration;
 @Setter
 @Accessors(chain = true)
 public class RedisCacheConfiguration {
+
+    public static final int DEFAULT_BATCH_SIZE = 500;
+    private static final CacheRefresher DEFAULT_CACHE_REFRESHER = new CacheRefresher(4, 1000);
+
     private Duration ttl;
     private String keyPrefix;
     private String keySeparator;
     private boolean cacheNullValues;
     private ConversionService conversionService;
+    /**
+     * 批量读写时每批次的key数量，一个批次对应一次网络往返
+     */
+    private int batchSize;
+    /**
+     * clear 是否异步执行
+     */
+    private boolean clearAsync;
+    /**
+     * 是否启用名称版本号，启用后 clear 只递增版本号，旧版本数据依靠过期时间自然淘汰
+     */
+    private boolean nameVersionEnabled;
+    /**
+     * 名称版本号本地缓存的刷新间隔
+     */
+    private Duration nameVersionRefreshInterval;
+    /**
+     * 缓存未命中时等待其他线程加载结果的最长时间
+     */
+    private Duration loadWaitTimeout;
+    /**
+     * 分布式加载租约的有效期，null 表示不使用租约
+     */
+    private Duration leaseTimeout;
+    /**
+     * 提前刷新策略，null 表示不提前刷新
+     */
+    private RefreshPolicy refreshPolicy;
+    /**
+     * 提前刷新使用的后台执行器
+     */
+    private CacheRefresher cacheRefresher;
+    /**
+     * 过期时间随机抖动，null 表示不抖动
+     */
+    private TtlJitter ttlJitter;
+    /**
+     * 缓存值压缩，null 表示不压缩
+     */
+    private ValueCompressor valueCompressor;
+    /**
+     * 自定义的缓存key编码，优先于内置的转换规则
+     */
+    private List<CacheKeyCodec> keyCodecs;
 
     private RedisSerializationContext.SerializationPair<String> keySerializationPair;
     private RedisSerializationContext.SerializationPair<Object> valueSerializationPair;
+    /**
+     * 值序列化器，不为空时直接按字节数组读写，不经过 SerializationPair 的 ByteBuffer 复制
+     */
+    private RedisSerializer<Object> valueSerializer;
 
     private RedisCacheConfiguration(Duration ttl,
                                     String keyPrefix,
@@ -38,7 +98,19 @@ public class RedisCacheConfiguration {
                                     Boolean cacheNullValues,
                                     RedisSerializationContext.SerializationPair<String> keySerializationPair,
                                     RedisSerializationContext.SerializationPair<Object> valueSerializationPair,
-                                    ConversionService conversionService) {
+                                    RedisSerializer<Object> valueSerializer,
+                                    ConversionService conversionService,
+                                    int batchSize,
+                                    boolean clearAsync,
+                                    boolean nameVersionEnabled,
+                                    Duration nameVersionRefreshInterval,
+                                    Duration loadWaitTimeout,
+                                    Duration leaseTimeout,
+                                    RefreshPolicy refreshPolicy,
+                                    CacheRefresher cacheRefresher,
+                                    TtlJitter ttlJitter,
+                                    ValueCompressor valueCompressor,
+                                    List<CacheKeyCodec> keyCodecs) {
 
         this.ttl = ttl;
         this.cacheNullValues = cacheNullValues;
@@ -46,23 +118,55 @@ public class RedisCacheConfiguration {
         this.keySeparator = keySeparator;
         this.keySerializationPair = keySerializationPair;
         this.valueSerializationPair = valueSerializationPair;
+        this.valueSerializer = valueSerializer;
         this.conversionService = conversionService;
+        this.batchSize = batchSize;
+        this.clearAsync = clearAsync;
+        this.nameVersionEnabled = nameVersionEnabled;
+        this.nameVersionRefreshInterval = nameVersionRefreshInterval;
+        this.loadWaitTimeout = loadWaitTimeout;
+        this.leaseTimeout = leaseTimeout;
+        this.refreshPolicy = refreshPolicy;
+        this.cacheRefresher = cacheRefresher;
+        this.ttlJitter = ttlJitter;
+        this.valueCompressor = valueCompressor;
+        this.keyCodecs = keyCodecs;
     }
 
     public static RedisCacheConfiguration defaultCacheConfig() {
-        DefaultFormattingConversionService conversionService = new DefaultFormattingConversionService();
-        registerDefaultConverters(conversionService);
+        CacheConversionService conversionService = new CacheConversionService(RedisCacheConfiguration::registerDefaultConverters);
+        JdkSerializationRedisSerializer valueSerializer = new JdkSerializationRedisSerializer();
         return new RedisCacheConfiguration(Duration.ZERO, "", ":", true,
                 RedisSerializationContext.SerializationPair.fromSerializer(new StringRedisSerializer()),
-                RedisSerializationContext.SerializationPair.fromSerializer(new JdkSerializationRedisSerializer()), conversionService);
+                RedisSerializationContext.SerializationPair.fromSerializer(valueSerializer), valueSerializer, conversionService, DEFAULT_BATCH_SIZE, false, false, Duration.ofSeconds(1L), Duration.ofSeconds(3L), null, null, DEFAULT_CACHE_REFRESHER, null, null, Collections.emptyList());
     }
 
     public RedisCacheConfiguration entryTtl(Duration ttl) {
         Assert.notNull(ttl, "TTL duration must not be null!");
-        return new RedisCacheConfiguration(ttl, keyPrefix, keySeparator, cacheNullValues, keySerializationPair, valueSerializationPair, conversionService);
+        return new RedisCacheConfiguration(ttl, keyPrefix, keySeparator, cacheNullValues, keySerializationPair, valueSerializationPair, valueSerializer, conversionService, batchSize, clearAsync, nameVersionEnabled, nameVersionRefreshInterval, loadWaitTimeout, leaseTimeout,
+                refreshPolicy, cacheRefresher, ttlJitter, valueCompressor, keyCodecs);
     }
 
 
+    /**
+     * 同时设置 SerializationPair
+     */
+    public RedisCacheConfiguration setValueSerializer(RedisSerializer<Object> valueSerializer) {
+        Assert.notNull(valueSerializer, "ValueSerializer must not be null!");
+        this.valueSerializer = valueSerializer;
+        this.valueSerializationPair = RedisSerializationContext.SerializationPair.fromSerializer(valueSerializer);
+        return this;
+    }
+
+    /**
+     * 只设置 SerializationPair 时按 ByteBuffer 读写
+     */
+    public RedisCacheConfiguration setValueSerializationPair(RedisSerializationContext.SerializationPair<Object> valueSerializationPair) {
+        this.valueSerializationPair = valueSerializationPair;
+        this.valueSerializer = null;
+        return this;
+    }
+
     public static void registerDefaultConverters(ConverterRegistry registry) {
         Assert.notNull(registry, "ConverterRegistry must not be null!");
         registry.addConverter(String.class, byte[].class, source -> source.getBytes(StandardCharsets.UTF_8));
@@ -3,44 +3,58 @@ package com.antelope.clustercache.autoconfigure.redis;
 import com.antelope.clustercache.autoconfigure.annotion.CacheExpire;
 import com.antelope.clustercache.autoconfigure.core.CacheWrapper;
 import com.antelope.clustercache.autoconfigure.core.ObjectMapperFactory;
+import com.antelope.clustercache.autoconfigure.core.TtlJitter;
+import com.antelope.clustercache.autoconfigure.core.TypedJsonCodec;
+import com.antelope.clustercache.autoconfigure.core.ValueCompressor;
+import com.antelope.clustercache.autoconfigure.local.LocalCacheRegistry;
 import com.antelope.clustercache.autoconfigure.util.CacheUtil;
 import com.antelope.clustercache.autoconfigure.util.TimeUtil;
 import com.alibaba.fastjson.support.spring.GenericFastJsonRedisSerializer;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.InitializingBean;
 import org.springframework.cache.Cache;
 import org.springframework.cache.transaction.AbstractTransactionSupportingCacheManager;
 import org.springframework.context.ApplicationContext;
 import org.springframework.context.ApplicationContextAware;
-import org.springframework.data.redis.cache.RedisCacheWriter;
 import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
 import org.springframework.data.redis.serializer.RedisSerializationContext;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
 import org.springframework.lang.NonNull;
 import org.springframework.lang.Nullable;
+import org.springframework.util.StringUtils;
+import org.springframework.util.unit.DataSize;
 
+import java.lang.reflect.Type;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 
 @Slf4j
-public class RedisCacheManager extends AbstractTransactionSupportingCacheManager implements ApplicationContextAware, InitializingBean {
+public class RedisCacheManager extends AbstractTransactionSupportingCacheManager implements ApplicationContextAware, InitializingBean, DisposableBean {
 
     private ApplicationContext applicationContext;
 
-    private final RedisCacheWriter cacheWriter;
+    private final DefaultRedisCacheWriter cacheWriter;
     private final RedisCacheConfiguration cacheConfiguration;
     private final Map<String, RedisCacheConfiguration> initialCacheConfiguration;
     private final boolean allowInFlightCacheCreation;
+    private LocalCacheRegistry localCacheRegistry;
+    private boolean typedValues;
 
     public static final ObjectMapper OBJECT_MAPPER = ObjectMapperFactory.newInstance();
 
     public static final StringRedisSerializer STRING_SERIALIZER = new StringRedisSerializer();
     public static final GenericFastJsonRedisSerializer FASTJSON_SERIALIZER = new GenericFastJsonRedisSerializer();
+    /**
+     * 缓存使用的 fastjson 序列化，与 {@link #FASTJSON_SERIALIZER} 格式相同
+     */
+    public static final FastJsonRedisSerializer FASTJSON_CACHE_SERIALIZER = new FastJsonRedisSerializer();
     public static final GenericJackson2JsonRedisSerializer JACKSON_SERIALIZER = new GenericJackson2JsonRedisSerializer(OBJECT_MAPPER);
     public static final RedisSerializationContext.SerializationPair<String> STRING_PAIR = RedisSerializationContext.SerializationPair.fromSerializer(STRING_SERIALIZER);
     public static final RedisSerializationContext.SerializationPair<Object> FASTJSON_PAIR = RedisSerializationContext.SerializationPair.fromSerializer(FASTJSON_SERIALIZER);
@@ -52,7 +66,7 @@ public class RedisCacheManager extends AbstractTransactionSupportingCacheManager
         this.applicationContext = applicationContext;
     }
 
-    private RedisCacheManager(@NonNull RedisCacheWriter cacheWriter,
+    private RedisCacheManager(@NonNull DefaultRedisCacheWriter cacheWriter,
                               @NonNull RedisCacheConfiguration cacheConfiguration,
                               boolean allowInFlightCacheCreation) {
 
@@ -63,7 +77,7 @@ public class RedisCacheManager extends AbstractTransactionSupportingCacheManager
     }
 
 
-    public RedisCacheManager(RedisCacheWriter cacheWriter, RedisCacheConfiguration defaultCacheConfiguration) {
+    public RedisCacheManager(DefaultRedisCacheWriter cacheWriter, RedisCacheConfiguration defaultCacheConfiguration) {
         this(cacheWriter, defaultCacheConfiguration, true);
     }
 
@@ -85,16 +99,66 @@ public class RedisCacheManager extends AbstractTransactionSupportingCacheManager
     @Override
     public void afterPropertiesSet() {
         Map<String, CacheExpire> cacheExpireMap = CacheUtil.resolveCacheExpire(applicationContext);
+        Map<String, Type> valueTypes = typedValues ? CacheUtil.resolveValueTypes(applicationContext) : Collections.emptyMap();
         cacheExpireMap.forEach((cacheName, cacheExpire) -> {
             RedisCacheConfiguration cacheConfig = this.cacheConfiguration;
             if (cacheExpire != null) {
                 cacheConfig = cacheConfig.entryTtl(TimeUtil.simpleParse(cacheExpire.expire()));
+                if (cacheExpire.loadLease()) {
+                    cacheConfig.setLeaseTimeout(TimeUtil.simpleParse(cacheExpire.leaseTimeout()));
+                }
+                cacheConfig.setRefreshPolicy(CacheUtil.resolveRefreshPolicy(cacheExpire));
+                if (!StringUtils.isEmpty(cacheExpire.jitter())) {
+                    cacheConfig.setTtlJitter(TtlJitter.parse(cacheExpire.jitter()));
+                }
+                if (!StringUtils.isEmpty(cacheExpire.compressThreshold())) {
+                    cacheConfig.setValueCompressor(ValueCompressor.of(cacheExpire.compressAlgorithm(), DataSize.parse(cacheExpire.compressThreshold())));
+                }
+            }
+            Type valueType = cacheExpire != null && cacheExpire.valueType() != Object.class ? cacheExpire.valueType() : valueTypes.get(cacheName);
+            if (valueType != null && cacheConfig.getValueSerializer() == JACKSON_SERIALIZER) {
+                if (cacheConfig == this.cacheConfiguration) {
+                    cacheConfig = cacheConfig.entryTtl(cacheConfig.getTtl());
+                }
+                cacheConfig.setValueSerializer(new TypedJsonRedisSerializer(new TypedJsonCodec(valueType)));
+                log.info("cacheName: {}, value type: {}", cacheName, valueType.getTypeName());
             }
             initialCacheConfiguration.put(cacheName, cacheConfig);
             log.info("cacheName: {}, expire: {}", cacheName, cacheConfig.getTtl());
         });
 
         super.afterPropertiesSet();
+        if (localCacheRegistry != null) {
+            localCacheRegistry.start();
+        }
+    }
+
+    @Override
+    public void destroy() {
+        if (localCacheRegistry != null) {
+            localCacheRegistry.stop();
+        }
+    }
+
+    /**
+     * 设置后对缓存启用本地一级缓存
+     */
+    public void setLocalCacheRegistry(@Nullable LocalCacheRegistry localCacheRegistry) {
+        this.localCacheRegistry = localCacheRegistry;
+    }
+
+    /**
+     * 设置后按方法返回类型为使用 jackson 序列化的缓存绑定值类型
+     */
+    public void setTypedValues(boolean typedValues) {
+        this.typedValues = typedValues;
+    }
+
+    @NonNull
+    @Override
+    protected Cache decorateCache(@NonNull Cache cache) {
+        Cache decorated = localCacheRegistry == null ? cache : localCacheRegistry.decorate(cache);
+        return super.decorateCache(decorated);
     }
 
     @Override
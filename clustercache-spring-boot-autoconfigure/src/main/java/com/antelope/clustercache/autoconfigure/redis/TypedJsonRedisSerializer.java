@@ -0,0 +1,39 @@
+package com.antelope.clustercache.autoconfigure.redis;
+
+import com.antelope.clustercache.autoconfigure.core.TypedJsonCodec;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+import org.springframework.lang.Nullable;
+
+/**
+ * 基于 {@link TypedJsonCodec} 的 redis 值序列化，每个缓存一个实例
+ *
+ * @author yaml
+ * @since 2021/11/30
+ */
+public class TypedJsonRedisSerializer implements RedisSerializer<Object> {
+
+    private final TypedJsonCodec codec;
+
+    public TypedJsonRedisSerializer(TypedJsonCodec codec) {
+        this.codec = codec;
+    }
+
+    @Override
+    public byte[] serialize(@Nullable Object value) throws SerializationException {
+        try {
+            return codec.serialize(value);
+        } catch (Exception e) {
+            throw new SerializationException("Could not write JSON as " + codec.getValueType() + ": " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public Object deserialize(@Nullable byte[] bytes) throws SerializationException {
+        try {
+            return codec.deserialize(bytes);
+        } catch (Exception e) {
+            throw new SerializationException("Could not read JSON as " + codec.getValueType() + ": " + e.getMessage(), e);
+        }
+    }
+}
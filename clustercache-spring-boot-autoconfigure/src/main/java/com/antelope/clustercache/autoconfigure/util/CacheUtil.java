@@ -2,18 +2,25 @@ package com.antelope.clustercache.autoconfigure.util;
 
 import com.antelope.clustercache.autoconfigure.annotion.BatchCacheable;
 import com.antelope.clustercache.autoconfigure.annotion.CacheExpire;
+import com.antelope.clustercache.autoconfigure.core.RefreshPolicy;
 import lombok.AccessLevel;
 import lombok.NoArgsConstructor;
 import org.springframework.cache.annotation.CacheConfig;
 import org.springframework.cache.annotation.Cacheable;
 import org.springframework.cache.annotation.Caching;
 import org.springframework.context.ApplicationContext;
+import org.springframework.core.ResolvableType;
 import org.springframework.core.annotation.AnnotationUtils;
 import org.springframework.util.ReflectionUtils;
+import org.springframework.util.StringUtils;
 
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.lang.reflect.TypeVariable;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Optional;
 
 /**
  * @author yaml
@@ -22,6 +29,24 @@ import java.util.Map;
 @NoArgsConstructor(access = AccessLevel.PRIVATE)
 public class CacheUtil {
 
+    /**
+     * 同一缓存存在不同类型或类型无法确定时的标记
+     */
+    private static final Type UNRESOLVED_TYPE = Void.class;
+
+    /**
+     * 根据 {@link CacheExpire} 生成提前刷新策略，未配置时返回null
+     */
+    public static RefreshPolicy resolveRefreshPolicy(CacheExpire cacheExpire) {
+        boolean hasWindow = !StringUtils.isEmpty(cacheExpire.refreshAhead());
+        boolean hasStaleTtl = !StringUtils.isEmpty(cacheExpire.staleTtl());
+        if (!hasWindow && !hasStaleTtl && cacheExpire.refreshBeta() <= 0) {
+            return null;
+        }
+        return new RefreshPolicy(hasWindow ? TimeUtil.simpleParse(cacheExpire.refreshAhead()) : null, cacheExpire.refreshBeta(),
+                hasStaleTtl ? TimeUtil.simpleParse(cacheExpire.staleTtl()) : null);
+    }
+
     /**
      * @return key: cacheNames value: CacheExpire
      */
@@ -34,6 +59,71 @@ public class CacheUtil {
         return result;
     }
 
+    /**
+     * 根据 @Cacheable 方法返回类型（Optional 取元素类型）及 @BatchCacheable 方法返回集合的元素类型推断每个缓存的值类型，
+     * 同一缓存存在不同类型或类型无法确定时不包含在结果中
+     *
+     * @return key: cacheName value: 值类型
+     */
+    public static Map<String, Type> resolveValueTypes(ApplicationContext applicationContext) {
+        Map<String, Type> types = new HashMap<>(64);
+        for (String beanName : applicationContext.getBeanNamesForType(Object.class)) {
+            Class<?> clazz = applicationContext.getType(beanName);
+            if (clazz != null) {
+                fillValueTypes(clazz, types);
+            }
+        }
+        types.values().removeIf(type -> type == UNRESOLVED_TYPE);
+        return types;
+    }
+
+    private static void fillValueTypes(Class<?> clazz, Map<String, Type> types) {
+        CacheConfig cacheConfig = AnnotationUtils.findAnnotation(clazz, CacheConfig.class);
+        String[] defaultCacheNames = cacheConfig == null ? new String[0] : cacheConfig.cacheNames();
+        ReflectionUtils.doWithMethods(clazz, method -> {
+            ResolvableType returnType = ResolvableType.forMethodReturnType(method, clazz);
+            ResolvableType cacheableType = Optional.class == returnType.resolve() ? returnType.getGeneric(0) : returnType;
+            Cacheable cacheable = AnnotationUtils.findAnnotation(method, Cacheable.class);
+            if (cacheable != null) {
+                String[] cacheNames = cacheable.cacheNames().length > 0 ? cacheable.cacheNames() : defaultCacheNames;
+                Arrays.stream(cacheNames).forEach(cacheName -> mergeValueType(types, cacheName, cacheableType));
+            }
+            Caching caching = AnnotationUtils.findAnnotation(method, Caching.class);
+            if (caching != null) {
+                Arrays.stream(caching.cacheable()).forEach(c -> Arrays.stream(c.cacheNames()).forEach(cacheName -> mergeValueType(types, cacheName, cacheableType)));
+            }
+            BatchCacheable batchCacheable = AnnotationUtils.findAnnotation(method, BatchCacheable.class);
+            if (batchCacheable != null) {
+                ResolvableType elementType = returnType.asMap() != ResolvableType.NONE ? returnType.asMap().getGeneric(1) : returnType.asCollection().getGeneric(0);
+                mergeValueType(types, batchCacheable.cacheName(), elementType);
+            }
+        });
+    }
+
+    private static void mergeValueType(Map<String, Type> types, String cacheName, ResolvableType valueType) {
+        Type type = concreteType(valueType);
+        types.merge(cacheName, type == null || type == Object.class || type == void.class ? UNRESOLVED_TYPE : type,
+                (o1, o2) -> o1.equals(o2) ? o1 : UNRESOLVED_TYPE);
+    }
+
+    /**
+     * 类型及泛型参数都是具体类型时返回对应的 Type，由子类确定的类型变量（如 T）返回解析后的类，否则返回 null
+     */
+    private static Type concreteType(ResolvableType resolvableType) {
+        if (resolvableType.getType() instanceof TypeVariable && !resolvableType.hasGenerics()) {
+            return resolvableType.resolve();
+        }
+        return isConcrete(resolvableType) ? resolvableType.getType() : null;
+    }
+
+    private static boolean isConcrete(ResolvableType resolvableType) {
+        Type type = resolvableType.getType();
+        if (type instanceof Class) {
+            return true;
+        }
+        return type instanceof ParameterizedType && Arrays.stream(resolvableType.getGenerics()).allMatch(CacheUtil::isConcrete);
+    }
+
     private static void fillData(Class<?> clazz, Map<String, CacheExpire> map) {
 
         ReflectionUtils.doWithMethods(clazz, method -> {
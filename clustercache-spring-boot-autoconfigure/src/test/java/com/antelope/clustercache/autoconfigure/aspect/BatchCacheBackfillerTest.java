@@ -0,0 +1,159 @@
+package com.antelope.clustercache.autoconfigure.aspect;
+
+import com.antelope.clustercache.autoconfigure.aspect.processor.AbstractBatchCacheableProcessor;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author yaml
+ * @since 2021/12/8
+ */
+public class BatchCacheBackfillerTest {
+
+    private static final Duration MISSING_TTL = Duration.ofMinutes(5);
+
+    @Test
+    public void loadedValueWinsOverPlaceholder() throws InterruptedException {
+        RecordingProcessor processor = new RecordingProcessor();
+        BatchCacheBackfiller backfiller = new BatchCacheBackfiller(processor, 1, 10, BatchCacheBackfiller.RejectPolicy.DROP, Duration.ofSeconds(5));
+        // 占住唯一的回填线程，后续提交在队列中合并
+        backfiller.submit("block", "", Collections.singletonMap("b", 1));
+        Assert.assertTrue(processor.blocked.await(5, TimeUnit.SECONDS));
+
+        backfiller.submit("user", "", map("1", "a"), Collections.singletonList("2"), MISSING_TTL);
+        backfiller.submit("user", "", map("2", "b"), Collections.singletonList("3"), MISSING_TTL);
+        // 已查询到数据的key不再写入占位
+        backfiller.submit("user", "", Collections.emptyMap(), Collections.singletonList("1"), MISSING_TTL);
+        Assert.assertEquals(2, backfiller.getCoalescedCount());
+
+        processor.release.countDown();
+        backfiller.shutdown();
+
+        Map<String, Object> expected = new HashMap<>(map("1", "a"));
+        expected.put("2", "b");
+        Assert.assertEquals(expected, processor.data.get("user"));
+        Assert.assertEquals(Collections.singleton("3"), processor.missingKeys.get("user"));
+        Assert.assertEquals(Collections.singletonList(MISSING_TTL), processor.missingTtls);
+    }
+
+    @Test
+    public void differentMissingTtlNotCoalesced() throws InterruptedException {
+        RecordingProcessor processor = new RecordingProcessor();
+        BatchCacheBackfiller backfiller = new BatchCacheBackfiller(processor, 1, 10, BatchCacheBackfiller.RejectPolicy.DROP, Duration.ofSeconds(5));
+        backfiller.submit("block", "", Collections.singletonMap("b", 1));
+        Assert.assertTrue(processor.blocked.await(5, TimeUnit.SECONDS));
+
+        backfiller.submit("user", "", Collections.emptyMap(), Collections.singletonList("1"), MISSING_TTL);
+        backfiller.submit("user", "", Collections.emptyMap(), Collections.singletonList("2"), Duration.ofMinutes(1));
+        Assert.assertEquals(0, backfiller.getCoalescedCount());
+
+        processor.release.countDown();
+        backfiller.shutdown();
+
+        Assert.assertEquals(2, processor.missingTtls.size());
+        Assert.assertTrue(processor.missingTtls.contains(MISSING_TTL));
+        Assert.assertTrue(processor.missingTtls.contains(Duration.ofMinutes(1)));
+    }
+
+    @Test
+    public void pendingSizeBoundedWhenSaturated() throws InterruptedException {
+        RecordingProcessor processor = new RecordingProcessor();
+        BatchCacheBackfiller backfiller = new BatchCacheBackfiller(processor, 1, 2, BatchCacheBackfiller.RejectPolicy.DROP, Duration.ofSeconds(5), 10);
+        backfiller.submit("block", "", Collections.singletonMap("b", 1));
+        Assert.assertTrue(processor.blocked.await(5, TimeUnit.SECONDS));
+
+        for (int i = 0; i < 200; i++) {
+            backfiller.submit("user", "", keys(i * 5, 5));
+            // 最多2个排队的批次，每批不超过 maxBatchSize
+            Assert.assertTrue(backfiller.getPendingSize() <= 2 * 10);
+        }
+        Assert.assertTrue(backfiller.getDroppedCount() > 0);
+        Assert.assertEquals(20, backfiller.getPendingSize());
+
+        processor.release.countDown();
+        backfiller.shutdown();
+        Assert.assertEquals(20, processor.data.get("user").size());
+        Assert.assertEquals(0, backfiller.getPendingSize());
+    }
+
+    @Test
+    public void fullBatchesWrittenInline() throws InterruptedException {
+        RecordingProcessor processor = new RecordingProcessor();
+        BatchCacheBackfiller backfiller = new BatchCacheBackfiller(processor, 1, 1, BatchCacheBackfiller.RejectPolicy.INLINE, Duration.ofSeconds(5), 10);
+        backfiller.submit("block", "", Collections.singletonMap("b", 1));
+        Assert.assertTrue(processor.blocked.await(5, TimeUnit.SECONDS));
+
+        for (int i = 0; i < 5; i++) {
+            backfiller.submit("user", "", keys(i * 10, 10));
+        }
+        Assert.assertEquals(4, backfiller.getInlineCount());
+        Assert.assertEquals(10, backfiller.getPendingSize());
+
+        processor.release.countDown();
+        backfiller.shutdown();
+        Assert.assertEquals(50, processor.data.get("user").size());
+    }
+
+    private static Map<String, Object> keys(int from, int size) {
+        Map<String, Object> keys = new HashMap<>();
+        for (int i = from; i < from + size; i++) {
+            keys.put(String.valueOf(i), i);
+        }
+        return keys;
+    }
+
+    private static Map<String, Object> map(String key, Object value) {
+        return Collections.singletonMap(key, value);
+    }
+
+    private static class RecordingProcessor implements AbstractBatchCacheableProcessor {
+        private final CountDownLatch blocked = new CountDownLatch(1);
+        private final CountDownLatch release = new CountDownLatch(1);
+        private final Map<String, Map<String, Object>> data = new HashMap<>();
+        private final Map<String, Set<String>> missingKeys = new HashMap<>();
+        private final List<Duration> missingTtls = new ArrayList<>();
+
+        @Override
+        public Map<String, Object> mGet(String cacheName, String prefix, List<String> keyCollection) {
+            return Collections.emptyMap();
+        }
+
+        @Override
+        public void mSet(String cacheName, String prefix, Map<String, Object> values) {
+            if ("block".equals(cacheName)) {
+                blocked.countDown();
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return;
+            }
+            synchronized (this) {
+                data.computeIfAbsent(cacheName, k -> new HashMap<>()).putAll(values);
+            }
+        }
+
+        @Override
+        public synchronized void mSetMissing(String cacheName, String prefix, Collection<String> keys, Duration ttl) {
+            missingKeys.computeIfAbsent(cacheName, k -> new HashSet<>()).addAll(keys);
+            missingTtls.add(ttl);
+        }
+
+        @Override
+        public void mEvict(String cacheName, String prefix, Collection<String> keys) {
+        }
+    }
+}
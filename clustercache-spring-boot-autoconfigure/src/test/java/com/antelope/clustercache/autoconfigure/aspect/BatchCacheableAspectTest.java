@@ -0,0 +1,126 @@
+package com.antelope.clustercache.autoconfigure.aspect;
+
+import com.antelope.clustercache.autoconfigure.annotion.BatchCacheable;
+import com.antelope.clustercache.autoconfigure.aspect.processor.AbstractBatchCacheableProcessor;
+import org.junit.Assert;
+import org.junit.Test;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @author yaml
+ * @since 2021/12/8
+ */
+public class BatchCacheableAspectTest {
+
+    @Test
+    public void invalidMissingTtlInvokesMethodOnce() {
+        RecordingProcessor processor = new RecordingProcessor();
+        UserService target = new UserService();
+        UserService service = proxy(target, processor);
+        Assert.assertEquals(Collections.singletonMap(1L, "u1"), service.invalidMissingTtl(Arrays.asList(1L, 2L)));
+        Assert.assertEquals(1, target.invocations.get());
+        Assert.assertTrue(processor.writes.isEmpty());
+    }
+
+    @Test
+    public void missingTtlIgnoredWithoutCacheMissing() {
+        RecordingProcessor processor = new RecordingProcessor();
+        UserService target = new UserService();
+        UserService service = proxy(target, processor);
+        Assert.assertEquals(Collections.singletonMap(1L, "u1"), service.emptyMissingTtl(Arrays.asList(1L, 2L)));
+        Assert.assertEquals(1, target.invocations.get());
+        Assert.assertEquals(Collections.singletonList("mSet:user"), processor.writes);
+    }
+
+    @Test
+    public void cacheWriteErrorInvokesMethodOnce() {
+        RecordingProcessor processor = new RecordingProcessor();
+        processor.failWrite = true;
+        UserService target = new UserService();
+        UserService service = proxy(target, processor);
+        Assert.assertEquals(Collections.singletonMap(1L, "u1"), service.cacheMissing(Arrays.asList(1L, 2L)));
+        Assert.assertEquals(1, target.invocations.get());
+    }
+
+    @Test
+    public void missingKeysCachedWithParsedTtl() {
+        RecordingProcessor processor = new RecordingProcessor();
+        UserService target = new UserService();
+        UserService service = proxy(target, processor);
+        service.cacheMissing(Arrays.asList(1L, 2L));
+        service.cacheMissing(Arrays.asList(3L));
+        Assert.assertEquals(Arrays.asList("mSet:user", "mSetMissing:user:[2]:PT30S", "mSetMissing:user:[3]:PT30S"), processor.writes);
+    }
+
+    private static UserService proxy(UserService target, RecordingProcessor processor) {
+        AspectJProxyFactory factory = new AspectJProxyFactory(target);
+        factory.setProxyTargetClass(true);
+        factory.addAspect(new BatchCacheableAspect(processor));
+        return factory.getProxy();
+    }
+
+    public static class UserService {
+        private final AtomicInteger invocations = new AtomicInteger();
+
+        @BatchCacheable(cacheName = "user", cacheAsync = false, cacheMissing = true, missingTtl = "30x")
+        public Map<Long, String> invalidMissingTtl(List<Long> ids) {
+            return load(ids);
+        }
+
+        @BatchCacheable(cacheName = "user", cacheAsync = false, missingTtl = "")
+        public Map<Long, String> emptyMissingTtl(List<Long> ids) {
+            return load(ids);
+        }
+
+        @BatchCacheable(cacheName = "user", cacheAsync = false, cacheMissing = true, missingTtl = "30s")
+        public Map<Long, String> cacheMissing(List<Long> ids) {
+            return load(ids);
+        }
+
+        private Map<Long, String> load(List<Long> ids) {
+            invocations.incrementAndGet();
+            Map<Long, String> result = new LinkedHashMap<>();
+            if (ids.contains(1L)) {
+                result.put(1L, "u1");
+            }
+            return result;
+        }
+    }
+
+    private static class RecordingProcessor implements AbstractBatchCacheableProcessor {
+        private final List<String> writes = new ArrayList<>();
+        private boolean failWrite;
+
+        @Override
+        public Map<String, Object> mGet(String cacheName, String prefix, List<String> keyCollection) {
+            return Collections.emptyMap();
+        }
+
+        @Override
+        public void mSet(String cacheName, String prefix, Map<String, Object> data) {
+            if (failWrite) {
+                throw new IllegalStateException("write error");
+            }
+            writes.add("mSet:" + cacheName);
+        }
+
+        @Override
+        public void mSetMissing(String cacheName, String prefix, Collection<String> keys, Duration ttl) {
+            writes.add("mSetMissing:" + cacheName + ":" + keys + ":" + ttl);
+        }
+
+        @Override
+        public void mEvict(String cacheName, String prefix, Collection<String> keys) {
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.antelope.clustercache.autoconfigure.aspect;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author yaml
+ * @since 2021/12/8
+ */
+public class BatchCollapserTest {
+
+    @Test
+    public void loadWithoutWindowWhenNotConcurrent() {
+        BatchCollapser collapser = new BatchCollapser(Duration.ofSeconds(5), 100, Duration.ofSeconds(1));
+        long start = System.currentTimeMillis();
+        Map<String, Object> result = collapser.load("g", keys("1"), BatchCollapserTest::echo);
+        Assert.assertTrue(System.currentTimeMillis() - start < 1000);
+        Assert.assertEquals(echo(keys("1")), result);
+    }
+
+    @Test
+    public void collapseWhileLoading() throws Exception {
+        BatchCollapser collapser = new BatchCollapser(Duration.ofMillis(300), 100, Duration.ofSeconds(5));
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            CountDownLatch release = new CountDownLatch(1);
+            Future<Map<String, Object>> first = executor.submit(() -> collapser.load("g", keys("0"), keys -> {
+                release.await();
+                return echo(keys);
+            }));
+            waitBatchCount(collapser, 1);
+
+            List<Map<String, Object>> loaded = Collections.synchronizedList(new ArrayList<>());
+            List<Future<Map<String, Object>>> futures = new ArrayList<>();
+            for (int i = 1; i <= 3; i++) {
+                Map<String, Object> keys = keys(String.valueOf(i));
+                futures.add(executor.submit(() -> collapser.load("g", keys, batchKeys -> {
+                    loaded.add(new HashMap<>(batchKeys));
+                    return echo(batchKeys);
+                })));
+            }
+            for (Future<Map<String, Object>> future : futures) {
+                Map<String, Object> result = future.get(5, TimeUnit.SECONDS);
+                Assert.assertEquals(3, result.size());
+            }
+            release.countDown();
+            Assert.assertEquals(echo(keys("0")), first.get(5, TimeUnit.SECONDS));
+
+            Assert.assertEquals(1, loaded.size());
+            Assert.assertEquals(3, loaded.get(0).size());
+            Assert.assertEquals(2, collapser.getBatchCount());
+            Assert.assertEquals(2, collapser.getCollapsedCount());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void followerLoadsOwnKeysAfterTimeout() throws Exception {
+        BatchCollapser collapser = new BatchCollapser(Duration.ofMillis(300), 100, Duration.ofMillis(100));
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        CountDownLatch hang = new CountDownLatch(1);
+        try {
+            executor.submit(() -> collapser.load("g", keys("0"), keys -> {
+                hang.await();
+                return echo(keys);
+            }));
+            waitBatchCount(collapser, 1);
+            // 第二个批次的加载同样卡住
+            executor.submit(() -> collapser.load("g", keys("1"), keys -> {
+                hang.await();
+                return echo(keys);
+            }));
+            waitBatchCount(collapser, 2);
+
+            long start = System.currentTimeMillis();
+            Future<Map<String, Object>> follower = executor.submit(() -> collapser.load("g", keys("2"), BatchCollapserTest::echo));
+            Map<String, Object> result = follower.get(5, TimeUnit.SECONDS);
+            Assert.assertTrue(System.currentTimeMillis() - start >= 100);
+            Assert.assertEquals(echo(keys("2")), result);
+            Assert.assertEquals(1, collapser.getTimeoutCount());
+        } finally {
+            hang.countDown();
+            executor.shutdownNow();
+        }
+    }
+
+    private static void waitBatchCount(BatchCollapser collapser, long count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (collapser.getBatchCount() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        Assert.assertEquals(count, collapser.getBatchCount());
+    }
+
+    private static Map<String, Object> keys(String key) {
+        Map<String, Object> keys = new HashMap<>();
+        keys.put(key, key);
+        return keys;
+    }
+
+    private static Map<String, Object> echo(Map<String, Object> keys) {
+        Map<String, Object> result = new HashMap<>();
+        keys.forEach((k, v) -> result.put(k, "v" + v));
+        return result;
+    }
+}
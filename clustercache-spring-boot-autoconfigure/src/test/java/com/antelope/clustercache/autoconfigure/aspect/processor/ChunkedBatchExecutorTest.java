@@ -0,0 +1,112 @@
+package com.antelope.clustercache.autoconfigure.aspect.processor;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * @author yaml
+ * @since 2021/12/8
+ */
+public class ChunkedBatchExecutorTest {
+
+    @Test
+    public void smallBatchLoadedInCallerThread() {
+        ChunkedBatchExecutor executor = new ChunkedBatchExecutor(10, 4, 4);
+        Thread caller = Thread.currentThread();
+        List<List<Integer>> chunks = new ArrayList<>();
+        executor.execute(keys(10), chunk -> {
+            Assert.assertSame(caller, Thread.currentThread());
+            return chunk;
+        }, chunks::add);
+        Assert.assertEquals(Collections.singletonList(keys(10)), chunks);
+    }
+
+    @Test
+    public void everyKeyLoadedOnceInContiguousChunks() {
+        ChunkedBatchExecutor executor = new ChunkedBatchExecutor(10, 4, 4);
+        Thread caller = Thread.currentThread();
+        List<Integer> loaded = new ArrayList<>();
+        executor.execute(keys(95), ArrayList::new, chunk -> {
+            Assert.assertSame(caller, Thread.currentThread());
+            Assert.assertTrue(chunk.size() <= 10);
+            for (int i = 1; i < chunk.size(); i++) {
+                Assert.assertEquals(chunk.get(i - 1) + 1, (int) chunk.get(i));
+            }
+            loaded.addAll(chunk);
+        });
+        Collections.sort(loaded);
+        Assert.assertEquals(keys(95), loaded);
+    }
+
+    @Test
+    public void resultsConsumedInCompletionOrder() {
+        ChunkedBatchExecutor executor = new ChunkedBatchExecutor(10, 2, 2);
+        CountDownLatch secondConsumed = new CountDownLatch(1);
+        List<Integer> order = new ArrayList<>();
+        executor.execute(keys(20), chunk -> {
+            if (chunk.get(0) == 0) {
+                // 第一个分片等第二个分片的结果处理后才返回
+                await(secondConsumed);
+            }
+            return chunk.get(0);
+        }, first -> {
+            order.add(first);
+            secondConsumed.countDown();
+        });
+        Assert.assertEquals(Arrays.asList(10, 0), order);
+    }
+
+    @Test
+    public void inFlightChunksLimitedByParallelism() {
+        ChunkedBatchExecutor executor = new ChunkedBatchExecutor(1, 2, 8);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        executor.execute(keys(20), chunk -> {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            running.decrementAndGet();
+            return chunk;
+        }, chunk -> {
+        });
+        Assert.assertTrue(maxRunning.get() <= 2);
+        Assert.assertEquals(2, maxRunning.get());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void chunkErrorPropagated() {
+        ChunkedBatchExecutor executor = new ChunkedBatchExecutor(10, 4, 4);
+        executor.execute(keys(50), chunk -> {
+            if (chunk.contains(25)) {
+                throw new IllegalStateException("chunk error");
+            }
+            return chunk;
+        }, chunk -> {
+        });
+    }
+
+    private static List<Integer> keys(int size) {
+        return IntStream.range(0, size).boxed().collect(Collectors.toList());
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            Assert.assertTrue(latch.await(5, TimeUnit.SECONDS));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
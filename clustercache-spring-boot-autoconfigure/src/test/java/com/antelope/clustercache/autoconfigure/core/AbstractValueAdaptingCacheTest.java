@@ -0,0 +1,37 @@
+package com.antelope.clustercache.autoconfigure.core;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @author yaml
+ * @since 2021/12/8
+ */
+public class AbstractValueAdaptingCacheTest {
+
+    @Test
+    public void valueWrittenAfterMissNotLoadedAgain() {
+        InMemoryCache cache = new InMemoryCache(null);
+        // 模拟上一个加载线程在本次查询未命中之后写入缓存并结束加载
+        cache.afterLookup = key -> {
+            cache.afterLookup = k -> {
+            };
+            cache.put(key, "loaded by previous leader");
+        };
+        AtomicInteger loads = new AtomicInteger();
+        Assert.assertEquals("loaded by previous leader", cache.get("k", () -> "v" + loads.incrementAndGet()));
+        Assert.assertEquals(0, loads.get());
+    }
+
+    @Test
+    public void loadOnceWhenStillMissing() {
+        InMemoryCache cache = new InMemoryCache(null);
+        AtomicInteger loads = new AtomicInteger();
+        Assert.assertEquals("v1", cache.get("k", () -> "v" + loads.incrementAndGet()));
+        Assert.assertEquals("v1", cache.get("k", () -> "v" + loads.incrementAndGet()));
+        Assert.assertEquals(1, loads.get());
+        Assert.assertEquals(1, cache.getSingleFlight().getLoadCount());
+    }
+}
@@ -0,0 +1,170 @@
+package com.antelope.clustercache.autoconfigure.core;
+
+import lombok.Data;
+import org.junit.Assert;
+import org.junit.Test;
+import org.springframework.cache.support.NullValue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * @author yaml
+ * @since 2021/12/8
+ */
+public class BinaryCodecTest {
+
+    private final BinaryCodec codec = new BinaryCodec(Collections.emptyMap());
+
+    @Test
+    public void nullValueKeepsIdentity() {
+        Assert.assertSame(NullValue.INSTANCE, roundTrip(NullValue.INSTANCE));
+    }
+
+    @Test
+    public void cacheEnvelope() {
+        CacheEnvelope envelope = roundTrip(new CacheEnvelope(Arrays.asList(1L, "a"), 1000L, 60000L, 12L));
+        Assert.assertEquals(Arrays.asList(1L, "a"), envelope.getValue());
+        Assert.assertEquals(1000L, envelope.getWriteTime());
+        Assert.assertEquals(60000L, envelope.getTtl());
+        Assert.assertEquals(12L, envelope.getLoadCost());
+
+        CacheEnvelope nullEnvelope = roundTrip(new CacheEnvelope(NullValue.INSTANCE, 1L, 2L, 3L));
+        Assert.assertSame(NullValue.INSTANCE, nullEnvelope.getValue());
+    }
+
+    @Test
+    public void unmodifiableCollections() {
+        List<Integer> list = Arrays.asList(3, 1, 2);
+        assertWrapper(Collections.unmodifiableCollection(new ArrayList<>(list)), true);
+        assertWrapper(Collections.unmodifiableList(new ArrayList<>(list)), false);
+        assertWrapper(Collections.unmodifiableList(new LinkedList<>(list)), false);
+        assertWrapper(Collections.unmodifiableSet(new HashSet<>(list)), false);
+        assertWrapper(Collections.unmodifiableSortedSet(new TreeSet<>(list)), false);
+        assertWrapper(Collections.unmodifiableNavigableSet(new TreeSet<>(list)), false);
+        assertWrapper(Collections.unmodifiableMap(map()), false);
+        assertWrapper(Collections.unmodifiableSortedMap(new TreeMap<>(map())), false);
+        assertWrapper(Collections.unmodifiableNavigableMap(new TreeMap<>(map())), false);
+    }
+
+    @Test
+    public void synchronizedCollections() {
+        List<Integer> list = Arrays.asList(3, 1, 2);
+        assertWrapper(Collections.synchronizedCollection(new ArrayList<>(list)), true);
+        assertWrapper(Collections.synchronizedList(new ArrayList<>(list)), false);
+        assertWrapper(Collections.synchronizedList(new LinkedList<>(list)), false);
+        assertWrapper(Collections.synchronizedSet(new HashSet<>(list)), false);
+        assertWrapper(Collections.synchronizedSortedSet(new TreeSet<>(list)), false);
+        assertWrapper(Collections.synchronizedNavigableSet(new TreeSet<>(list)), false);
+        assertWrapper(Collections.synchronizedMap(map()), false);
+        assertWrapper(Collections.synchronizedSortedMap(new TreeMap<>(map())), false);
+        assertWrapper(Collections.synchronizedNavigableMap(new TreeMap<>(map())), false);
+
+        List<Integer> decoded = roundTrip(Collections.synchronizedList(new ArrayList<>(list)));
+        decoded.add(4);
+        Assert.assertEquals(Arrays.asList(3, 1, 2, 4), decoded);
+    }
+
+    @Test
+    public void emptyAndSingletonCollections() {
+        assertWrapper(Collections.emptyList(), false);
+        assertWrapper(Collections.emptySet(), false);
+        assertWrapper(Collections.emptyMap(), false);
+        assertWrapper(Collections.emptySortedSet(), false);
+        assertWrapper(Collections.emptyNavigableSet(), false);
+        assertWrapper(Collections.emptySortedMap(), false);
+        assertWrapper(Collections.emptyNavigableMap(), false);
+        assertWrapper(Collections.singletonList("a"), false);
+        assertWrapper(Collections.singleton("a"), false);
+        assertWrapper(Collections.singletonMap("a", 1), false);
+        assertWrapper(Arrays.asList("a", "b"), false);
+    }
+
+    @Test
+    public void sortedWrapperKeepsComparator() {
+        SortedSet<String> set = new TreeSet<>(Comparator.reverseOrder());
+        set.addAll(Arrays.asList("a", "c", "b"));
+        SortedSet<String> decoded = roundTrip(Collections.unmodifiableSortedSet(set));
+        Assert.assertEquals(Arrays.asList("c", "b", "a"), new ArrayList<>(decoded));
+
+        SortedMap<String, Integer> decodedMap = roundTrip(Collections.unmodifiableSortedMap(new TreeMap<>(map())));
+        Assert.assertEquals("a", decodedMap.firstKey());
+    }
+
+    @Test
+    public void wrapperInsideValue() {
+        Map<String, Object> value = new HashMap<>();
+        value.put("ids", Collections.unmodifiableList(Arrays.asList(1L, 2L)));
+        value.put("names", Collections.unmodifiableMap(map()));
+        Assert.assertEquals(value, roundTrip(new CacheEnvelope(value, 1L, 2L, 3L)).getValue());
+    }
+
+    @Test
+    public void addedFieldCompatible() {
+        BinaryCodec oldCodec = new BinaryCodec(Collections.singletonMap(100, UserV1.class));
+        BinaryCodec newCodec = new BinaryCodec(Collections.singletonMap(100, UserV2.class));
+        UserV1 user = new UserV1();
+        user.setId(1L);
+        user.setName("antelope");
+
+        UserV2 upgraded = (UserV2) newCodec.deserialize(oldCodec.serialize(user));
+        Assert.assertEquals(Long.valueOf(1L), upgraded.getId());
+        Assert.assertEquals("antelope", upgraded.getName());
+        Assert.assertNull(upgraded.getTags());
+
+        upgraded.setTags(Collections.unmodifiableList(Arrays.asList("a", "b")));
+        UserV1 downgraded = (UserV1) oldCodec.deserialize(newCodec.serialize(upgraded));
+        Assert.assertEquals(user, downgraded);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T roundTrip(T value) {
+        return (T) codec.deserialize(codec.serialize(value));
+    }
+
+    /**
+     * unmodifiableCollection、synchronizedCollection 没有实现 equals，按内容比较
+     */
+    private void assertWrapper(Object value, boolean compareContent) {
+        Object decoded = roundTrip(value);
+        Assert.assertEquals(value.getClass(), decoded.getClass());
+        if (compareContent) {
+            Assert.assertEquals(new ArrayList<>((Collection<?>) value), new ArrayList<>((Collection<?>) decoded));
+        } else {
+            Assert.assertEquals(value, decoded);
+        }
+    }
+
+    private static Map<String, Integer> map() {
+        Map<String, Integer> map = new LinkedHashMap<>();
+        map.put("b", 2);
+        map.put("a", 1);
+        return map;
+    }
+
+    @Data
+    public static class UserV1 {
+        private Long id;
+        private String name;
+    }
+
+    @Data
+    public static class UserV2 {
+        private Long id;
+        private String name;
+        private List<String> tags;
+    }
+}
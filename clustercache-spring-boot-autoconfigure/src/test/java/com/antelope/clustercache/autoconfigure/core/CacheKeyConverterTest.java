@@ -0,0 +1,65 @@
+package com.antelope.clustercache.autoconfigure.core;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.springframework.cache.interceptor.SimpleKey;
+import org.springframework.format.support.DefaultFormattingConversionService;
+
+import java.math.BigDecimal;
+import java.time.DayOfWeek;
+import java.util.Arrays;
+
+/**
+ * @author yaml
+ * @since 2021/12/8
+ */
+public class CacheKeyConverterTest {
+
+    @Test
+    public void builtInTypesMatchConversionService() {
+        CacheConversionService conversionService = new CacheConversionService();
+        CacheKeyConverter keyConverter = new CacheKeyConverter(conversionService, null);
+        for (Object key : Arrays.asList("k", 1L, 2, (short) 3, (byte) 4, 1.5d, 2.5f, new BigDecimal("1.10"), DayOfWeek.MONDAY)) {
+            Assert.assertEquals(conversionService.convert(key, String.class), keyConverter.convert(key));
+        }
+        SimpleKey simpleKey = new SimpleKey("a", 1);
+        Assert.assertEquals(simpleKey.toString(), keyConverter.convert(simpleKey));
+        Assert.assertFalse(conversionService.isCustomized());
+    }
+
+    @Test
+    public void customizedDefaultConversionServiceUsed() {
+        CacheConversionService conversionService = new CacheConversionService();
+        conversionService.addConverter(Long.class, String.class, source -> String.format("%06d", source));
+        Assert.assertTrue(conversionService.isCustomized());
+        Assert.assertEquals("000001", new CacheKeyConverter(conversionService, null).convert(1L));
+    }
+
+    @Test
+    public void userConversionServiceUsed() {
+        DefaultFormattingConversionService conversionService = new DefaultFormattingConversionService();
+        conversionService.addConverter(DayOfWeek.class, String.class, source -> String.valueOf(source.getValue()));
+        conversionService.addConverter(String.class, String.class, String::toLowerCase);
+        CacheKeyConverter keyConverter = new CacheKeyConverter(conversionService, null);
+        Assert.assertEquals("1", keyConverter.convert(DayOfWeek.MONDAY));
+        Assert.assertEquals("key", keyConverter.convert("KEY"));
+    }
+
+    @Test
+    public void keyCodecBeforeConversionService() {
+        CacheKeyCodec keyCodec = new CacheKeyCodec() {
+            @Override
+            public boolean supports(Class<?> keyType) {
+                return keyType == Long.class;
+            }
+
+            @Override
+            public String encode(Object key) {
+                return "L" + key;
+            }
+        };
+        CacheKeyConverter keyConverter = new CacheKeyConverter(new CacheConversionService(), Arrays.asList(keyCodec));
+        Assert.assertEquals("L1", keyConverter.convert(1L));
+        Assert.assertEquals("1", keyConverter.convert(1));
+    }
+}
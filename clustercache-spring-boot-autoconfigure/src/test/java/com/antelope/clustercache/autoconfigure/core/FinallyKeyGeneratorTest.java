@@ -0,0 +1,45 @@
+package com.antelope.clustercache.autoconfigure.core;
+
+import com.antelope.clustercache.autoconfigure.util.HashUtil;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * @author yaml
+ * @since 2021/12/8
+ */
+public class FinallyKeyGeneratorTest {
+
+    private static final List<String> KEYS = Arrays.asList("1", "user:1", "a b c", "中文key", " leading", "trailing:", "   ",
+            "", null, "tab\tkey", "0123456789012345678901234567890123456789012345678901234567890123456789");
+
+    @Test
+    public void generateBytesEqualsGenerate() {
+        List<FinallyKeyGenerator> keyGenerators = Arrays.asList(
+                FinallyKeyGenerator.getInstance("user", "app", ":"),
+                FinallyKeyGenerator.getInstance("user", null, ":"),
+                FinallyKeyGenerator.getInstance(null, ":"),
+                FinallyKeyGenerator.getInstance("用户", " app", ":"));
+        for (FinallyKeyGenerator keyGenerator : keyGenerators) {
+            for (String nameVersion : Arrays.asList(null, "1", "2")) {
+                for (String key : KEYS) {
+                    String expected = keyGenerator.generate(key, nameVersion);
+                    Assert.assertArrayEquals(key + "@" + nameVersion, expected.getBytes(StandardCharsets.UTF_8),
+                            keyGenerator.generateBytes(key, nameVersion));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void longKeyHashed() {
+        FinallyKeyGenerator keyGenerator = FinallyKeyGenerator.getInstance("user", "app", ":");
+        String key = KEYS.get(KEYS.size() - 1);
+        Assert.assertEquals("app:user:1:" + HashUtil.murmur3Hex(key.getBytes(StandardCharsets.UTF_8)),
+                keyGenerator.generate(key, "1"));
+    }
+}
@@ -0,0 +1,68 @@
+package com.antelope.clustercache.autoconfigure.core;
+
+import org.springframework.format.support.DefaultFormattingConversionService;
+import org.springframework.lang.NonNull;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * 测试用的本地缓存，可以模拟读写失败
+ *
+ * @author yaml
+ * @since 2021/12/8
+ */
+class InMemoryCache extends AbstractValueAdaptingCache {
+
+    final Map<Object, Object> store = new ConcurrentHashMap<>();
+    volatile boolean failLookup;
+    volatile boolean failPut;
+    /**
+     * 每次查询后执行，用于模拟其他线程在查询之后写入
+     */
+    volatile Consumer<Object> afterLookup = key -> {
+    };
+
+    InMemoryCache(RefreshPolicy refreshPolicy) {
+        super("test", Duration.ofMinutes(1), new DefaultFormattingConversionService(), true, Duration.ofSeconds(1), null,
+                refreshPolicy, new CacheRefresher(1, 10), null, null);
+    }
+
+    @Override
+    protected Object lookup(@NonNull Object key) {
+        if (failLookup) {
+            throw new IllegalStateException("lookup error");
+        }
+        Object value = store.get(key);
+        afterLookup.accept(key);
+        return value;
+    }
+
+    @Override
+    protected void put(Object key, Object value, long loadCost) {
+        if (failPut) {
+            throw new IllegalStateException("put error");
+        }
+        store.put(key, wrapCacheValue(toStoreValue(value), loadCost));
+    }
+
+    @NonNull
+    @Override
+    public Object getNativeCache() {
+        return store;
+    }
+
+    @Override
+    public void evict(@NonNull Object key) {
+        forgetStaleValue(key);
+        store.remove(key);
+    }
+
+    @Override
+    public void clear() {
+        forgetStaleValues();
+        store.clear();
+    }
+}
@@ -0,0 +1,124 @@
+package com.antelope.clustercache.autoconfigure.core;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @author yaml
+ * @since 2021/12/8
+ */
+public class SingleFlightTest {
+
+    @Test
+    public void coalesceConcurrentLoads() throws Exception {
+        SingleFlight singleFlight = new SingleFlight(Duration.ofSeconds(5));
+        ExecutorService executor = Executors.newFixedThreadPool(5);
+        try {
+            CountDownLatch release = new CountDownLatch(1);
+            AtomicInteger loads = new AtomicInteger();
+            Future<String> leader = executor.submit(() -> singleFlight.execute("k", () -> {
+                loads.incrementAndGet();
+                release.await();
+                return "v";
+            }));
+            waitInFlight(singleFlight);
+
+            List<Future<String>> followers = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                followers.add(executor.submit(() -> singleFlight.execute("k", () -> "v" + loads.incrementAndGet())));
+            }
+            waitCoalesced(singleFlight, 4);
+            release.countDown();
+
+            Assert.assertEquals("v", leader.get(5, TimeUnit.SECONDS));
+            for (Future<String> follower : followers) {
+                Assert.assertEquals("v", follower.get(5, TimeUnit.SECONDS));
+            }
+            Assert.assertEquals(1, loads.get());
+            Assert.assertEquals(1, singleFlight.getLoadCount());
+            Assert.assertEquals(0, singleFlight.getTimeoutCount());
+            Assert.assertEquals(0, singleFlight.getInFlightCount());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void loadSelfAfterWaitTimeout() throws Exception {
+        SingleFlight singleFlight = new SingleFlight(Duration.ofMillis(100));
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            CountDownLatch release = new CountDownLatch(1);
+            Future<String> leader = executor.submit(() -> singleFlight.execute("k", () -> {
+                release.await();
+                return "slow";
+            }));
+            waitInFlight(singleFlight);
+
+            Assert.assertEquals("fast", singleFlight.execute("k", () -> "fast"));
+            Assert.assertEquals(1, singleFlight.getTimeoutCount());
+
+            release.countDown();
+            Assert.assertEquals("slow", leader.get(5, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void propagateLoadErrorToFollowers() throws Exception {
+        SingleFlight singleFlight = new SingleFlight(Duration.ofSeconds(5));
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            CountDownLatch release = new CountDownLatch(1);
+            Future<String> leader = executor.submit(() -> singleFlight.execute("k", () -> {
+                release.await();
+                throw new IllegalStateException("load error");
+            }));
+            waitInFlight(singleFlight);
+            Future<String> follower = executor.submit(() -> singleFlight.execute("k", () -> "v"));
+            waitCoalesced(singleFlight, 1);
+            release.countDown();
+
+            for (Future<String> future : Arrays.asList(leader, follower)) {
+                try {
+                    future.get(5, TimeUnit.SECONDS);
+                    Assert.fail();
+                } catch (ExecutionException e) {
+                    Assert.assertTrue(e.getCause() instanceof IllegalStateException);
+                }
+            }
+            Assert.assertEquals("v", singleFlight.execute("k", () -> "v"));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static void waitInFlight(SingleFlight singleFlight) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (singleFlight.getInFlightCount() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        Assert.assertEquals(1, singleFlight.getInFlightCount());
+    }
+
+    private static void waitCoalesced(SingleFlight singleFlight, long count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (singleFlight.getCoalescedCount() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        Assert.assertEquals(count, singleFlight.getCoalescedCount());
+    }
+}
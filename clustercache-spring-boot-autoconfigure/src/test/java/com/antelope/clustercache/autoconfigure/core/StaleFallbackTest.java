@@ -0,0 +1,54 @@
+package com.antelope.clustercache.autoconfigure.core;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @author yaml
+ * @since 2021/12/8
+ */
+public class StaleFallbackTest {
+
+    private static final RefreshPolicy STALE_POLICY = new RefreshPolicy(null, 0, Duration.ofMinutes(1));
+
+    @Test
+    public void returnLastKnownValueWhenLookupFails() {
+        InMemoryCache cache = new InMemoryCache(STALE_POLICY);
+        AtomicInteger loads = new AtomicInteger();
+        Assert.assertEquals("v1", cache.get("k", () -> "v" + loads.incrementAndGet()));
+
+        cache.failLookup = true;
+        Assert.assertEquals("v1", cache.get("k", () -> "v" + loads.incrementAndGet()));
+        Assert.assertEquals("v1", cache.get("k").get());
+        Assert.assertEquals(1, loads.get());
+    }
+
+    @Test
+    public void returnLoadedValueWhenPutFails() {
+        InMemoryCache cache = new InMemoryCache(STALE_POLICY);
+        cache.failPut = true;
+        Assert.assertEquals("v", cache.get("k", () -> "v"));
+        cache.failLookup = true;
+        Assert.assertEquals("v", cache.get("k").get());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void evictedValueNotReturned() {
+        InMemoryCache cache = new InMemoryCache(STALE_POLICY);
+        cache.get("k", () -> "v");
+        cache.evict("k");
+        cache.failLookup = true;
+        cache.get("k");
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void lookupErrorPropagatesWithoutStaleTtl() {
+        InMemoryCache cache = new InMemoryCache(new RefreshPolicy(Duration.ofSeconds(1), 0));
+        cache.get("k", () -> "v");
+        cache.failLookup = true;
+        cache.get("k");
+    }
+}
@@ -0,0 +1,59 @@
+package com.antelope.clustercache.autoconfigure.core;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.time.Duration;
+
+/**
+ * @author yaml
+ * @since 2021/12/8
+ */
+public class TtlJitterTest {
+
+    @Test
+    public void emptyOrZeroDisabled() {
+        Assert.assertNull(TtlJitter.parse(null));
+        Assert.assertNull(TtlJitter.parse(""));
+        Assert.assertNull(TtlJitter.parse("0%"));
+        Assert.assertNull(TtlJitter.parse("0s"));
+    }
+
+    @Test
+    public void ratioWithinBound() {
+        TtlJitter jitter = TtlJitter.parse(" 10% ");
+        Assert.assertNotNull(jitter);
+        Duration ttl = Duration.ofMinutes(10);
+        boolean jittered = false;
+        for (int i = 0; i < 1000; i++) {
+            Duration applied = jitter.apply(ttl);
+            Assert.assertTrue(applied.compareTo(ttl) >= 0);
+            Assert.assertTrue(applied.compareTo(Duration.ofMinutes(11)) <= 0);
+            jittered |= !applied.equals(ttl);
+        }
+        Assert.assertTrue(jittered);
+    }
+
+    @Test
+    public void fixedWithinBound() {
+        TtlJitter jitter = TtlJitter.parse("5s");
+        Assert.assertNotNull(jitter);
+        Duration ttl = Duration.ofSeconds(1);
+        for (int i = 0; i < 1000; i++) {
+            Duration applied = jitter.apply(ttl);
+            Assert.assertTrue(applied.compareTo(ttl) >= 0);
+            Assert.assertTrue(applied.compareTo(Duration.ofSeconds(6)) <= 0);
+        }
+    }
+
+    @Test
+    public void noExpireUnchanged() {
+        TtlJitter jitter = TtlJitter.parse("10%");
+        Assert.assertNotNull(jitter);
+        Assert.assertNull(jitter.apply(null));
+        Assert.assertEquals(Duration.ZERO, jitter.apply(Duration.ZERO));
+        Assert.assertEquals(Duration.ofSeconds(-1), jitter.apply(Duration.ofSeconds(-1)));
+        // 比例换算后不足1毫秒时不抖动
+        Assert.assertEquals(Duration.ofMillis(5), jitter.apply(Duration.ofMillis(5)));
+    }
+}
@@ -0,0 +1,76 @@
+package com.antelope.clustercache.autoconfigure.core;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+/**
+ * @author yaml
+ * @since 2021/12/8
+ */
+public class ValueCompressorTest {
+
+    private static final byte[] JSON = repeat("{\"id\":1,\"name\":\"antelope\",\"tags\":[\"a\",\"b\"]}", 100);
+
+    @Test
+    public void disabledWithoutThreshold() {
+        Assert.assertNull(ValueCompressor.of(ValueCompressor.Algorithm.DEFLATE, null));
+        Assert.assertNull(ValueCompressor.of(ValueCompressor.Algorithm.DEFLATE, DataSize.ofBytes(0)));
+    }
+
+    @Test
+    public void deflateRoundTrip() {
+        assertRoundTrip(new ValueCompressor(ValueCompressor.Algorithm.DEFLATE, 1024));
+    }
+
+    @Test
+    public void lz4RoundTrip() {
+        assertRoundTrip(new ValueCompressor(ValueCompressor.Algorithm.LZ4, 1024));
+    }
+
+    @Test
+    public void belowThresholdNotCompressed() {
+        ValueCompressor compressor = new ValueCompressor(ValueCompressor.Algorithm.DEFLATE, JSON.length + 1);
+        byte[] bytes = compressor.compress(JSON);
+        Assert.assertSame(JSON, bytes);
+        Assert.assertFalse(ValueCompressor.isCompressed(bytes));
+        Assert.assertSame(JSON, ValueCompressor.decompress(bytes));
+    }
+
+    @Test
+    public void incompressibleNotCompressed() {
+        byte[] random = new byte[4096];
+        new Random(1L).nextBytes(random);
+        random[0] = '{';
+        for (ValueCompressor.Algorithm algorithm : ValueCompressor.Algorithm.values()) {
+            byte[] bytes = new ValueCompressor(algorithm, 1).compress(random);
+            Assert.assertSame(random, bytes);
+            Assert.assertFalse(ValueCompressor.isCompressed(bytes));
+        }
+    }
+
+    @Test
+    public void uncompressedDataReadAsIs() {
+        byte[] bytes = "{\"id\":1}".getBytes(StandardCharsets.UTF_8);
+        Assert.assertFalse(ValueCompressor.isCompressed(bytes));
+        Assert.assertSame(bytes, ValueCompressor.decompress(bytes));
+    }
+
+    private static void assertRoundTrip(ValueCompressor compressor) {
+        byte[] compressed = compressor.compress(JSON);
+        Assert.assertTrue(ValueCompressor.isCompressed(compressed));
+        Assert.assertTrue(compressed.length < JSON.length);
+        Assert.assertArrayEquals(JSON, ValueCompressor.decompress(compressed));
+    }
+
+    private static byte[] repeat(String value, int times) {
+        StringBuilder stringBuilder = new StringBuilder();
+        for (int i = 0; i < times; i++) {
+            stringBuilder.append(value);
+        }
+        return stringBuilder.toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,34 @@
+package com.antelope.clustercache.autoconfigure.memcached;
+
+import com.antelope.clustercache.autoconfigure.core.TtlJitter;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.time.Duration;
+
+/**
+ * @author yaml
+ * @since 2021/12/8
+ */
+public class MemCacheTest {
+
+    @Test
+    public void expireSecondsClampedToThirtyDays() {
+        Assert.assertEquals(2592000, MemCache.expireSeconds(Duration.ofDays(30)));
+        Assert.assertEquals(2592000, MemCache.expireSeconds(Duration.ofDays(30).plusSeconds(1)));
+        Assert.assertEquals(2592000, MemCache.expireSeconds(Duration.ofDays(365)));
+
+        TtlJitter jitter = TtlJitter.parse("10%");
+        for (int i = 0; i < 100; i++) {
+            Assert.assertEquals(2592000, MemCache.expireSeconds(jitter.apply(Duration.ofDays(30))));
+        }
+    }
+
+    @Test
+    public void expireSecondsRoundedUp() {
+        Assert.assertEquals(0, MemCache.expireSeconds(Duration.ZERO));
+        Assert.assertEquals(1, MemCache.expireSeconds(Duration.ofMillis(500)));
+        Assert.assertEquals(2, MemCache.expireSeconds(Duration.ofMillis(1500)));
+        Assert.assertEquals(60, MemCache.expireSeconds(Duration.ofMinutes(1)));
+    }
+}
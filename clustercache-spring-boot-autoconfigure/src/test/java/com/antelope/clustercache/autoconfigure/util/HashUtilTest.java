@@ -0,0 +1,51 @@
+package com.antelope.clustercache.autoconfigure.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * @author yaml
+ * @since 2021/12/8
+ */
+public class HashUtilTest {
+
+    @Test
+    public void referenceVectors() {
+        Assert.assertEquals("00000000000000000000000000000000", murmur3Hex(""));
+        Assert.assertEquals("029bbd41b3a7d8cb191dae486a901e5b", murmur3Hex("hello"));
+        Assert.assertEquals("6c1b07bc7bbc4be347939ac4a93c437a", murmur3Hex("The quick brown fox jumps over the lazy dog"));
+    }
+
+    /**
+     * SMHasher 的校验方式：对长度 0~255 的 key（key[i] = i，种子 256 - i）分别取哈希，拼接后再取一次哈希，
+     * 结果前4个字节按小端读取应为 MurmurHash3_x64_128 的校验值 0x6384BA69；覆盖了所有尾部长度和多块输入
+     */
+    @Test
+    public void smhasherVerificationValue() {
+        byte[] key = new byte[256];
+        byte[] hashes = new byte[256 * 16];
+        for (int i = 0; i < 256; i++) {
+            key[i] = (byte) i;
+            byte[] hash = fromHex(HashUtil.murmur3Hex(Arrays.copyOf(key, i), 256 - i));
+            System.arraycopy(hash, 0, hashes, i * 16, 16);
+        }
+        byte[] hash = fromHex(HashUtil.murmur3Hex(hashes, 0));
+        int verification = (hash[0] & 0xFF) | (hash[1] & 0xFF) << 8 | (hash[2] & 0xFF) << 16 | (hash[3] & 0xFF) << 24;
+        Assert.assertEquals(0x6384BA69, verification);
+    }
+
+    private static String murmur3Hex(String value) {
+        return HashUtil.murmur3Hex(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static byte[] fromHex(String hex) {
+        byte[] bytes = new byte[hex.length() / 2];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) Integer.parseInt(hex.substring(i * 2, i * 2 + 2), 16);
+        }
+        return bytes;
+    }
+}